@@ -0,0 +1,45 @@
+package com.solace.samples.java;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solace.messaging.MessagingService;
+import com.solace.messaging.config.SolaceProperties.AuthenticationProperties;
+import com.solace.messaging.config.SolaceProperties.ServiceProperties;
+import com.solace.messaging.config.SolaceProperties.TransportLayerProperties;
+import com.solace.messaging.config.profile.ConfigurationProfile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/** Fixtures shared by the benchmarks. None of them need a broker. */
+public final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * A service that is built but never connected: enough for <code>messageBuilder()</code>, which
+     * is all the benchmarks use it for.
+     */
+    public static MessagingService unconnectedService() {
+        Properties properties = new Properties();
+        properties.setProperty(TransportLayerProperties.HOST, "localhost:55555");
+        properties.setProperty(ServiceProperties.VPN_NAME, "default");
+        properties.setProperty(AuthenticationProperties.SCHEME_BASIC_USER_NAME, "benchmark");
+        return MessagingService.builder(ConfigurationProfile.V1).fromProperties(properties).build();
+    }
+
+    /** The first event of the bundled payloads.json. */
+    public static JsonNode sampleEvent() {
+        try (InputStream in = BenchmarkSupport.class.getClassLoader().getResourceAsStream("payloads.json")) {
+            if (in == null) {
+                throw new IllegalStateException("payloads.json not found on the classpath");
+            }
+            return new ObjectMapper().readTree(in).get("actions").get(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.solace.samples.java;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solace.messaging.publisher.OutboundMessage;
+import com.solace.messaging.publisher.OutboundMessageBuilder;
+import com.solace.messaging.resources.Topic;
+import com.solace.samples.java.router.FieldScanner;
+import com.solace.samples.java.router.TopicCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event costs in {@link EventRouter}: building the topic name and <code>Topic</code>, and
+ * getting from input text to an outbound message in the parsed and raw modes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventRouterBenchmark {
+
+    private JsonNode event;
+    private String eventJson;
+    private byte[] eventBytes;
+    private String[] routingValues;
+    private ObjectMapper mapper;
+    private OutboundMessageBuilder messageBuilder;
+    private TopicCache topicCache;
+    private FieldScanner scanner;
+    private String[] scanned;
+
+    @Setup
+    public void setup() {
+        event = BenchmarkSupport.sampleEvent();
+        eventJson = event.toString();
+        eventBytes = eventJson.getBytes(StandardCharsets.UTF_8);
+        routingValues = new String[TopicCache.ROUTING_FIELDS.length];
+        for (int i = 0; i < routingValues.length; i++) {
+            routingValues[i] = event.get(TopicCache.ROUTING_FIELDS[i]).asText();
+        }
+        mapper = new ObjectMapper();
+        messageBuilder = BenchmarkSupport.unconnectedService().messageBuilder();
+        topicCache = new TopicCache(10_000);
+        scanner = new FieldScanner(TopicCache.ROUTING_FIELDS);
+        scanned = new String[scanner.fieldCount()];
+    }
+
+    @Benchmark
+    public String buildTopicName() {
+        return EventRouter.buildTopicName(event);
+    }
+
+    @Benchmark
+    public String buildTopicNameFromScannedValues() {
+        return EventRouter.buildTopicName(routingValues);
+    }
+
+    @Benchmark
+    public Topic topicOfBuiltName() {
+        return Topic.of(EventRouter.buildTopicName(event));
+    }
+
+    @Benchmark
+    public Topic topicFromCache() {
+        return topicCache.get(event);
+    }
+
+    /** The default path: parse, re-serialize, build. */
+    @Benchmark
+    public OutboundMessage parseToMessage() throws IOException {
+        JsonNode parsed = mapper.readTree(eventJson);
+        return messageBuilder.withProperty("messageId", "id").build(parsed.toString());
+    }
+
+    /** The --raw path: scan the routing fields, send the original bytes. */
+    @Benchmark
+    public OutboundMessage scanToMessage() {
+        scanner.scan(eventBytes, 0, eventBytes.length, scanned);
+        return messageBuilder.withProperty("messageId", "id").build(eventBytes);
+    }
+}
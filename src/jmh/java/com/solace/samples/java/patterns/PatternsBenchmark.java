@@ -0,0 +1,122 @@
+package com.solace.samples.java.patterns;
+
+import com.solace.messaging.config.SolaceProperties.MessageProperties;
+import com.solace.messaging.publisher.OutboundMessage;
+import com.solace.messaging.publisher.OutboundMessageBuilder;
+import com.solace.messaging.resources.Topic;
+import com.solace.samples.java.BenchmarkSupport;
+import com.solace.samples.java.perf.TopicRewriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-message steps of {@link DirectPublisher} and of the topic rewrite in
+ * {@link DirectProcessor} and {@link GuaranteedProcessor}, copied as they are written there, so
+ * claims like "StringBuilder faster than +" can be checked.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PatternsBenchmark {
+
+    private static final String TOPIC_PREFIX = "solace/samples/";
+    private static final String API = "Java";
+
+    private final byte[] payload = new byte[100];
+    private OutboundMessageBuilder messageBuilder;
+    private String inboundTopic;
+    private char[][] inboundTopics;  // one per letter
+    private TopicRewriter topicRewriter;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        messageBuilder = BenchmarkSupport.unconnectedService().messageBuilder();
+        inboundTopic = TOPIC_PREFIX + "java/direct/pub/K";
+        inboundTopics = new char[26][];
+        for (int i = 0; i < inboundTopics.length; i++) {
+            inboundTopics[i] = (TOPIC_PREFIX + "java/direct/pub/" + (char) ('A' + i)).toCharArray();
+        }
+        topicRewriter = new TopicRewriter(TOPIC_PREFIX + "*/direct/pub", TOPIC_PREFIX + API.toLowerCase() + "/direct/upper", 10_000);
+    }
+
+    /** A new String each time, as getDestinationName() returns one per message, so no hash code is cached. */
+    private String nextInboundTopic() {
+        return new String(inboundTopics[counter++ % 26]);
+    }
+
+    private char nextCharacter() {
+        return (char) (counter++ % 26 + 65);
+    }
+
+    @Benchmark
+    public String publisherTopicStringBuilder() {
+        return new StringBuilder(TOPIC_PREFIX).append(API.toLowerCase())
+                .append("/direct/pub/").append(nextCharacter()).toString();
+    }
+
+    @Benchmark
+    public String publisherTopicConcat() {
+        return TOPIC_PREFIX + API.toLowerCase() + "/direct/pub/" + nextCharacter();
+    }
+
+    @Benchmark
+    public Topic publisherTopicOf() {
+        return Topic.of(new StringBuilder(TOPIC_PREFIX).append(API.toLowerCase())
+                .append("/direct/pub/").append(nextCharacter()).toString());
+    }
+
+    @Benchmark
+    public byte[] publisherPayloadFill() {
+        Arrays.fill(payload, (byte) nextCharacter());
+        return payload;
+    }
+
+    @Benchmark
+    public OutboundMessage publisherOutboundMessage() {
+        return messageBuilder.withProperty(MessageProperties.APPLICATION_MESSAGE_ID, "id").build(payload);
+    }
+
+    /** DirectProcessor's original topic rewrite: validate, split and rebuild the topic. */
+    @Benchmark
+    public Topic processorTopicRewrite() {
+        String inboundTopic = nextInboundTopic();
+        if (!inboundTopic.contains("/direct/pub/")) {
+            return null;
+        }
+        String[] inboundTopicLevels = inboundTopic.split("/", 6);
+        return Topic.of(new StringBuilder(TOPIC_PREFIX).append(API.toLowerCase())
+                .append("/direct/upper/").append(inboundTopicLevels[5]).toString());
+    }
+
+    /** The same rewrite with {@link TopicRewriter}; compare allocations with <code>-prof gc</code>. */
+    @Benchmark
+    public Topic processorTopicRewriter() {
+        return topicRewriter.rewrite(nextInboundTopic());
+    }
+
+    /** The cost of {@link #nextInboundTopic()} alone, to subtract from both rewrites. */
+    @Benchmark
+    public String processorInboundTopic() {
+        return nextInboundTopic();
+    }
+
+    @Benchmark
+    public OutboundMessage processorOutboundMessage() {
+        return messageBuilder.build(inboundTopic.toUpperCase());
+    }
+}
@@ -0,0 +1,64 @@
+package com.solace.samples.java.perf;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** {@link MessageIdGenerator} strategies against the <code>UUID.randomUUID()</code> they replaced. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageIdBenchmark {
+
+    @Param({"counter", "snowflake", "uuid"})
+    public String strategy;
+
+    private MessageIdGenerator generator;
+
+    @State(Scope.Thread)
+    public static class Buffer {
+        final char[] chars = new char[MessageIdGenerator.MAX_ID_LENGTH];
+    }
+
+    @Setup
+    public void setup() {
+        generator = MessageIdGenerator.create(strategy, "bench");
+    }
+
+    @Benchmark
+    public String nextId() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    public int nextIdIntoBuffer(Buffer buffer) {
+        return generator.nextId(buffer.chars);
+    }
+
+    /** Snowflake ids share one CAS loop, so this shows the cost of contention. */
+    @Benchmark
+    @Threads(4)
+    public String nextIdFourThreads() {
+        return generator.nextId();
+    }
+
+    @Benchmark
+    public String uuidRandomUuid() {
+        return UUID.randomUUID().toString();
+    }
+}
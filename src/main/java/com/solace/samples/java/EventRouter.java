@@ -2,19 +2,129 @@ package com.solace.samples.java;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.solace.messaging.MessagingService;
 import com.solace.messaging.config.SolaceProperties;
 import com.solace.messaging.config.profile.ConfigurationProfile;
 import com.solace.messaging.publisher.DirectMessagePublisher;
 import com.solace.messaging.publisher.OutboundMessage;
+import com.solace.messaging.publisher.OutboundMessageBuilder;
+import com.solace.messaging.publisher.PersistentMessagePublisher;
 import com.solace.messaging.resources.Topic;
+import com.solace.samples.java.perf.AllocationMeter;
+import com.solace.samples.java.perf.MessageIdGenerator;
+import com.solace.samples.java.perf.RateLimiter;
+import com.solace.samples.java.perf.ReplayScheduler;
+import com.solace.samples.java.perf.SampledLogger;
+import com.solace.samples.java.router.EventFilter;
+import com.solace.samples.java.router.EventSource;
+import com.solace.samples.java.router.FieldScanner;
+import com.solace.samples.java.router.FollowingNdjsonEventSource;
+import com.solace.samples.java.router.MappedNdjsonEventSource;
+import com.solace.samples.java.router.MessageSender;
+import com.solace.samples.java.router.PartitionedPublisher;
+import com.solace.samples.java.router.PublishStats;
+import com.solace.samples.java.router.RawEvent;
+import com.solace.samples.java.router.RawEventReader;
+import com.solace.samples.java.router.RoutingTable;
+import com.solace.samples.java.router.RouterOptions;
+import com.solace.samples.java.router.StreamingJsonEventSource;
+import com.solace.samples.java.router.SyntheticEventGenerator;
+import com.solace.samples.java.router.TopicCache;
+import com.solace.samples.java.router.WindowedPersistentPublisher;
+import org.apache.logging.log4j.util.Unbox;
 
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class EventRouter {
 
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: EventRouter [options]",
+            "  --input=<path>",
+            "      read events from this file instead of payloads.json",
+            "  --stream",
+            "      parse the 'actions' array incrementally instead of loading the whole file",
+            "  --format=ndjson",
+            "      read one event per line from a memory-mapped --input file",
+            "  --parser-threads=<n>",
+            "      threads parsing NDJSON chunks (default half the cores)",
+            "  --chunk-mb=<n>",
+            "      NDJSON chunk size per parser task, 1 to 2047 (default 64)",
+            "  --follow",
+            "      keep publishing lines appended to the NDJSON --input file until Ctrl-C",
+            "  --checkpoint=<path>",
+            "      where follow mode saves its read offset (default <input>.offset)",
+            "  --checkpoint-interval-ms=<ms>",
+            "      how often follow mode saves its offset (default 1000)",
+            "  --routes=<path>",
+            "      route by the rules in this JSON file instead of the fixed bank/... topic layout",
+            "  --routes-reload-ms=<ms>",
+            "      how often to check the rules file for changes, 0 for never (default 1000)",
+            "  --filter=<expression>",
+            "      publish only matching events, e.g. \"region in (ae,eu) and status == 'failure'\"",
+            "  --rate=<msg/s>",
+            "      target publish rate, 0 for unlimited (default 2, or unlimited with --generate)",
+            "  --generate[=<n>]",
+            "      publish n synthetic events made from the input events as templates, 0 for until Ctrl-C (default 1,000,000)",
+            "  --generator-threads=<n>",
+            "      threads generating and publishing synthetic events, sharing --rate (default cores)",
+            "  --generator-config=<path>",
+            "      JSON field distributions for --generate (default Zipf customerId, routing fields kept from each template)",
+            "  --burst=<n>",
+            "      messages allowed back-to-back when catching up (default 1)",
+            "  --replay[=<speed>|max]",
+            "      instead of --rate, publish at the pace of the event timestamps, sped up n times (default 1x)",
+            "  --time-field=<field>",
+            "      ISO-8601 or epoch-millis event time used by --replay (default timestamp)",
+            "  --topic-cache[=<max-entries>]",
+            "      reuse Topic objects per routing tuple (default 10000 entries)",
+            "  --partitions=<n>",
+            "      publish on n threads, each with its own publisher, partitioned by key",
+            "  --partition-key=<field>",
+            "      event field used to pick the partition (default customerId)",
+            "  --partition-queue=<n>",
+            "      max queued events per partition (default 1024)",
+            "  --services=<n>",
+            "      spread partitions over n broker connections (default 1, shared)",
+            "  --persistent",
+            "      publish Guaranteed messages with asynchronous ACKs instead of Direct",
+            "  --window=<n>",
+            "      max unacknowledged Guaranteed messages per publisher (default 256)",
+            "  --ack-timeout=<ms>",
+            "      how long to wait for outstanding ACKs at shutdown (default 5000)",
+            "  --raw",
+            "      publish each event's original bytes, scanning only the routing fields (no JsonNode)",
+            "  --message-id=counter|snowflake|uuid",
+            "      how the messageId property is generated (default uuid)",
+            "  --node-id=<name>",
+            "      node prefix for counter ids, or snowflake node number 0 to 1023 (names are hashed; default pid@host)",
+            "  --log=stdout|log4j|off",
+            "      where per-message lines go; log4j with log4j2-async.xml is asynchronous (default stdout)",
+            "  --log-every=<n>",
+            "      log only 1 in n published messages (default 1)",
+            "  --stats-interval=<ms>",
+            "      print per-field publish rates this often, 0 for off (default 5000)");
+
     public static void main(String[] args) throws IOException, InterruptedException {
+        RouterOptions options;
+        try {
+            options = RouterOptions.parse(USAGE, args);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(USAGE);
+            System.exit(-1);
+            return;
+        }
 
         // Solace connection details
         String host = "**";
@@ -28,51 +138,380 @@ public class EventRouter {
         solaceProps.setProperty(SolaceProperties.AuthenticationProperties.SCHEME_BASIC_USER_NAME, username);
         solaceProps.setProperty(SolaceProperties.AuthenticationProperties.SCHEME_BASIC_PASSWORD, password);
 
-        MessagingService messagingService = MessagingService.builder(ConfigurationProfile.V1)
-                .fromProperties(solaceProps)
-                .build()
-                .connect();
-
-        DirectMessagePublisher publisher = messagingService.createDirectMessagePublisherBuilder()
-                .onBackPressureWait(1)
-                .build()
-                .start();
+        MessagingService messagingService = connect(solaceProps);
+        Publishers publishers = new Publishers(options, solaceProps, messagingService);
 
-        List<JsonNode> events = getEventsFromFile(); // No customerId filtering here
-        Map<String, Integer> messageCounts = new HashMap<>();
+        PublishStats stats = new PublishStats(1000);
+        long statsIntervalMs = options.getLong("stats-interval", 5000);
+        if (statsIntervalMs > 0) {
+            stats.start(statsIntervalMs);
+        }
+        ReplayScheduler replay = options.has("replay") ? ReplayScheduler.forSpeed(options.get("replay", "1")) : null;
+        RateLimiter rateLimiter = new RateLimiter(replay != null ? 0 : options.getDouble("rate", 2), options.getInt("burst", 1));
+        TopicCache topicCache = options.has("topic-cache") ? new TopicCache(options.getInt("topic-cache", 10_000)) : null;
+        MessageIdGenerator messageIds = MessageIdGenerator.create(options.get("message-id", "uuid"),
+                options.get("node-id", null));
+        Supplier<SampledLogger> messageLogs = () ->  // one per publishing thread
+                new SampledLogger(options.get("log", "stdout"), options.getInt("log-every", 1));
+        messageLogs.get();  // fail fast on a bad --log value
+        EventFilter filter = options.has("filter") ? EventFilter.compile(options.get("filter", null)) : null;
+        RoutingTable routingTable = options.has("routes") ? RoutingTable.load(Paths.get(options.get("routes", null)),
+                topicCache != null ? topicCache : new TopicCache(10_000)) : null;
+        if (routingTable != null && options.getLong("routes-reload-ms", 1000) > 0) {
+            routingTable.watch(options.getLong("routes-reload-ms", 1000));
+        }
+        Shared shared = new Shared(messageIds, topicCache, routingTable, stats);
+        AllocationMeter allocationMeter = new AllocationMeter();
 
         System.out.println("\nProcessing events:\n");
-        for (JsonNode event : events) {
-            String eventType = event.get("eventType").asText();
-            String topicName = buildTopicName(event);
-            String messageContent = event.toString();
-            String messageId = UUID.randomUUID().toString();
+        long routed;
+        PartitionedPublisher<?> partitioned;
+        if (options.has("generate")) {
+            if (options.has("raw") || options.has("replay") || options.has("partitions")) {
+                throw new IllegalArgumentException("--generate cannot be combined with --raw, --replay or --partitions");
+            }
+            partitioned = null;
+            routed = routeGenerated(options, publishers, messageLogs, shared, filter);
+        } else if (options.has("raw")) {
+            // scan the six routing fields, plus the partition key, event time, filter and routing rule fields not among them
+            String partitionKey = options.get("partition-key", "customerId");
+            List<String> fields = new ArrayList<>(Arrays.asList(TopicCache.ROUTING_FIELDS));
+            if (!fields.contains(partitionKey)) {
+                fields.add(partitionKey);
+            }
+            if (replay != null && !fields.contains(options.get("time-field", "timestamp"))) {
+                fields.add(options.get("time-field", "timestamp"));
+            }
+            for (String field : filter != null ? filter.getFields() : new String[0]) {
+                if (!fields.contains(field)) {
+                    fields.add(field);
+                }
+            }
+            for (String field : routingTable != null ? routingTable.getFields() : new String[0]) {
+                if (!fields.contains(field)) {
+                    fields.add(field);
+                }
+            }
+            FieldScanner scanner = new FieldScanner(fields.toArray(new String[0]));
+            if (routingTable != null) {
+                routingTable.bind(scanner);
+            }
+            int keyIndex = scanner.indexOf(partitionKey);
+            PartitionedPublisher<RawEvent> rawPartitions = partitioned(options, event -> event.getField(keyIndex),
+                    p -> new RawEventPublisher(publishers.serviceFor(p), publishers.create(p), messageLogs.get(), shared));
+            partitioned = rawPartitions;
+            routed = routeRaw(options, scanner, rawPartitions == null ? new RawEventPublisher(messagingService,
+                    publishers.create(0), messageLogs.get(), shared) : null, rawPartitions, filter, rateLimiter, replay);
+        } else {
+            PartitionedPublisher<JsonNode> parsedPartitions = partitioned(options,
+                    event -> textOf(event, options.get("partition-key", "customerId")),
+                    p -> new EventPublisher(publishers.serviceFor(p), publishers.create(p), messageLogs.get(), shared));
+            partitioned = parsedPartitions;
+            routed = routeParsed(options, parsedPartitions == null ? new EventPublisher(messagingService,
+                    publishers.create(0), messageLogs.get(), shared) : null, parsedPartitions, filter, rateLimiter, replay);
+        }
 
-            OutboundMessage outboundMessage = messagingService.messageBuilder()
-                    .withProperty("messageId", messageId)
-                    .build(messageContent);
+        System.out.println("\nSummary:");
+        stats.stop();
+        stats.printSummary();
+        if (shared.malformed.sum() > 0) {
+            System.out.printf("Skipped %,d events missing a routing field%n", shared.malformed.sum());
+        }
+        if (rateLimiter.getAcquired() > 0) {
+            System.out.println("Publish rate: " + rateLimiter);
+        }
+        if (replay != null) {
+            System.out.println("Replay: " + replay);
+        }
+        if (partitioned != null) {
+            // the partition threads publish and report their own allocations in the partition summary
+            System.out.println("Reader thread (parse and dispatch only): " + allocationMeter.report(routed, "event"));
+        } else if (!options.has("generate")) {  // generator threads report their own
+            System.out.println("Router thread: " + allocationMeter.report(routed, "event"));
+        }
+        if (topicCache != null) {
+            System.out.println("Topic cache: " + topicCache);
+        }
+        if (routingTable != null) {
+            routingTable.close();
+            System.out.println("Routing table: " + routingTable);
+        }
+        if (partitioned != null) {
+            partitioned.printSummary();
+        }
+
+        publishers.terminate(options.getLong("ack-timeout", 5000));
+        messagingService.disconnect();
+
+        System.out.println("✅ Application terminated.");
+    }
 
-            publisher.publish(outboundMessage, Topic.of(topicName));
+    /**
+     * Parses each event into a JsonNode tree and publishes its serialized form.
+     *
+     * @return number of events routed
+     */
+    private static long routeParsed(RouterOptions options, EventPublisher eventPublisher,
+                                    PartitionedPublisher<JsonNode> partitioned, EventFilter filter,
+                                    RateLimiter rateLimiter, ReplayScheduler replay) throws IOException, InterruptedException {
+        String timeField = options.get("time-field", "timestamp");
+        EventSource events = openEventSource(options);
+        if (events instanceof FollowingNdjsonEventSource) {
+            // follow mode never runs out of input, so stop on Ctrl-C and let the loop save the checkpoint
+            FollowingNdjsonEventSource following = (FollowingNdjsonEventSource) events;
+            Thread mainThread = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                following.stop();
+                try {
+                    mainThread.join(10_000);
+                } catch (InterruptedException e) {
+                    // exiting anyway
+                }
+            }));
+            System.out.println("Following " + options.get("input", null) + " for appended events. Press Ctrl-C to quit.");
+        }
+        long routed = 0;
+        long filteredOut = 0;
+        JsonNode event;
+        while ((event = events.next()) != null) {
+            if (filter != null && !filter.test(event)) {
+                filteredOut++;
+                continue;
+            }
+            if (replay != null) {
+                replay.await(replay.parseEventTime(textOf(event, timeField)));
+            } else {
+                rateLimiter.acquire();
+            }
+            if (partitioned != null) {
+                partitioned.submit(event);
+            } else {
+                eventPublisher.accept(event);
+            }
+            routed++;
+        }
+        events.close();
+        if (partitioned != null) {
+            partitioned.close();  // waits for all partitions to drain
+        }
+        printFiltered(filter, filteredOut);
+        return routed;
+    }
 
-            messageCounts.put(eventType, messageCounts.getOrDefault(eventType, 0) + 1);
-            System.out.printf("Published to Topic: %s | Message: %s | Message ID: %s%n",
-                    topicName, messageContent, messageId);
+    /**
+     * Splits the input into raw event bytes, scans only the routing fields, and publishes the
+     * original bytes unchanged: no JsonNode tree, no toString(), no String-to-bytes copy.
+     *
+     * @return number of events routed
+     */
+    private static long routeRaw(RouterOptions options, FieldScanner scanner, RawEventPublisher eventPublisher, PartitionedPublisher<RawEvent> partitioned,
+                                 EventFilter filter, RateLimiter rateLimiter, ReplayScheduler replay)
+            throws IOException, InterruptedException {
+        if (options.has("follow")) {
+            throw new IllegalArgumentException("--raw cannot be combined with --follow");
+        }
+        InputStream inputStream = getPayloadInputStream(options);
+        if (inputStream == null) {
+            System.out.println("payloads.json not found in either classpath or current directory");
+            return 0;
+        }
+        Predicate<String[]> matches = filter != null ? filter.bind(scanner) : null;
+        int timeIndex = scanner.indexOf(options.get("time-field", "timestamp"));
+        long routed = 0;
+        long filteredOut = 0;
+        try (RawEventReader reader = new RawEventReader(inputStream, "ndjson".equals(options.get("format", "json")))) {
+            while (reader.next()) {
+                String[] fields = new String[scanner.fieldCount()];
+                try {
+                    scanner.scan(reader.buffer(), reader.offset(), reader.length(), fields);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping malformed event: " + e.getMessage());
+                    continue;
+                }
+                if (matches != null && !matches.test(fields)) {
+                    filteredOut++;
+                    continue;
+                }
+                byte[] payload = Arrays.copyOfRange(reader.buffer(), reader.offset(), reader.offset() + reader.length());
+                RawEvent event = new RawEvent(payload, fields);
+                if (replay != null) {
+                    replay.await(replay.parseEventTime(fields[timeIndex]));
+                } else {
+                    rateLimiter.acquire();
+                }
+                if (partitioned != null) {
+                    partitioned.submit(event);
+                } else {
+                    eventPublisher.accept(event);
+                }
+                routed++;
+            }
+        }
+        if (partitioned != null) {
+            partitioned.close();
+        }
+        printFiltered(filter, filteredOut);
+        return routed;
+    }
 
-            Thread.sleep(500);
+    /**
+     * Expands the input events into synthetic traffic: each generator thread makes its own events
+     * from the templates and publishes them on its own publisher, at its share of --rate. Events
+     * are made as they are sent, so memory use does not grow with the event count.
+     *
+     * @return number of events routed
+     */
+    private static long routeGenerated(RouterOptions options, Publishers publishers, Supplier<SampledLogger> messageLogs,
+                                       Shared shared, EventFilter filter) throws IOException, InterruptedException {
+        List<JsonNode> templates = getEventsFromFile(options);
+        if (templates.isEmpty()) {
+            return 0;
         }
+        JsonNode config = options.has("generator-config")
+                ? new ObjectMapper().readTree(new File(options.get("generator-config", null))) : null;
+        SyntheticEventGenerator generator = new SyntheticEventGenerator(templates, config);
+        long total = options.getLong("generate", 1_000_000);
+        int threadCount = options.getInt("generator-threads", Runtime.getRuntime().availableProcessors());
+        double rate = options.getDouble("rate", 0);  // a load generator runs flat out unless told otherwise
+        int burst = options.getInt("burst", 1);
+        System.out.printf("Generating %s events on %d threads from %s%n",
+                total > 0 ? String.format("%,d", total) : "unlimited", threadCount, generator);
 
-        System.out.println("\nSummary:");
-        for (Map.Entry<String, Integer> entry : messageCounts.entrySet()) {
-            System.out.printf("%s events published: %d%n", capitalize(entry.getKey()), entry.getValue());
+        // threads claim events in blocks so the shared budget is not contended per event; -1 means stop now
+        AtomicLong remaining = new AtomicLong(total > 0 ? total : Long.MAX_VALUE);
+        LongAdder routed = new LongAdder();
+        LongAdder filteredOut = new LongAdder();
+        LongAdder allocatedBytes = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        for (int t = 0; t < threadCount; t++) {
+            EventPublisher eventPublisher = new EventPublisher(publishers.serviceFor(t), publishers.create(t),
+                    messageLogs.get(), shared);
+            RateLimiter rateLimiter = new RateLimiter(rate / threadCount, burst);
+            Thread thread = new Thread(() -> {
+                AllocationMeter allocations = new AllocationMeter();
+                Random random = ThreadLocalRandom.current();
+                long claimed;
+                try {
+                    while ((claimed = claim(remaining, 256)) > 0) {
+                        for (long i = 0; i < claimed && remaining.get() >= 0; i++) {
+                            ObjectNode event = generator.next(random);
+                            if (filter != null && !filter.test(event)) {
+                                filteredOut.increment();
+                                continue;
+                            }
+                            rateLimiter.acquire();
+                            try {
+                                eventPublisher.accept(event);
+                                routed.increment();
+                            } catch (RuntimeException e) {
+                                System.err.println("Publish failed: " + e);
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // interrupted while pacing: stop generating on this thread
+                }
+                allocatedBytes.add(allocations.getAllocatedBytes());
+            }, "generator-" + t);
+            threads.add(thread);
+        }
+        if (total <= 0) {
+            Thread mainThread = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                remaining.set(-1);
+                try {
+                    mainThread.join(10_000);
+                } catch (InterruptedException e) {
+                    // exiting anyway
+                }
+            }));
+            System.out.println("Generating until Ctrl-C.");
         }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("Generated %,d events in %,.1f s (%,.0f events/s)%n",
+                routed.sum() + filteredOut.sum(), seconds, seconds > 0 ? (routed.sum() + filteredOut.sum()) / seconds : 0);
+        printFiltered(filter, filteredOut.sum());
+        if (AllocationMeter.isSupported()) {
+            System.out.printf("Generator threads: %,d bytes allocated, %,.1f bytes/event%n", allocatedBytes.sum(),
+                    routed.sum() == 0 ? 0 : (double) allocatedBytes.sum() / routed.sum());
+        }
+        return routed.sum();
+    }
 
-        publisher.terminate(1000);
-        messagingService.disconnect();
+    /** Takes up to <code>max</code> events from the shared budget; 0 once it is used up. */
+    private static long claim(AtomicLong remaining, long max) {
+        while (true) {
+            long left = remaining.get();
+            if (left <= 0) {
+                return 0;
+            }
+            long take = Math.min(left, max);
+            if (remaining.compareAndSet(left, left - take)) {
+                return take;
+            }
+        }
+    }
 
-        System.out.println("✅ Application terminated.");
+    private static void printFiltered(EventFilter filter, long filteredOut) {
+        if (filter != null) {
+            System.out.printf("Filter [%s] dropped %,d events%n", filter, filteredOut);
+        }
+    }
+
+    /**
+     * With --partitions, fans events out over several publishing threads, each with its own
+     * publisher; otherwise returns null and the caller publishes on the main thread.
+     */
+    private static <E> PartitionedPublisher<E> partitioned(RouterOptions options, Function<E, String> keyExtractor,
+                                                           IntFunction<Consumer<E>> handlerFactory) {
+        int partitionCount = options.getInt("partitions", 0);
+        if (partitionCount <= 0) {
+            return null;
+        }
+        String keyName = options.get("partition-key", "customerId");
+        System.out.printf("Publishing on %d partitions keyed by '%s'%n", partitionCount, keyName);
+        return new PartitionedPublisher<>(partitionCount, options.getInt("partition-queue", 1024),
+                keyExtractor, handlerFactory);
+    }
+
+    /** UTF-8 encoded length of a text payload, without encoding it. */
+    static int utf8Length(String text) {
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;  // one code point outside the BMP
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private static String textOf(JsonNode event, String field) {
+        JsonNode node = event.get(field);
+        return node == null ? null : node.asText();
+    }
+
+    private static MessagingService connect(Properties solaceProps) {
+        return MessagingService.builder(ConfigurationProfile.V1)
+                .fromProperties(solaceProps)
+                .build()
+                .connect();
     }
 
-    private static String buildTopicName(JsonNode event) {
+    // package-private so the JMH benchmarks can call it
+    static String buildTopicName(JsonNode event) {
         return String.format("bank/%s/%s/%s/%s/%s/%s",
                 event.get("lineOfBusiness").asText(),
                 event.get("function").asText(),
@@ -82,9 +521,49 @@ public class EventRouter {
                 event.get("eventType").asText());
     }
 
-    private static List<JsonNode> getEventsFromFile() {
+    /** Same layout as {@link #buildTopicName(JsonNode)}, from scanned values in TopicCache.ROUTING_FIELDS order. */
+    static String buildTopicName(String[] routingValues) {
+        return String.format("bank/%s/%s/%s/%s/%s/%s", routingValues[0], routingValues[1], routingValues[2],
+                routingValues[3], routingValues[4], routingValues[5]);
+    }
+
+    private static EventSource openEventSource(RouterOptions options) throws IOException {
+        if (options.has("follow")) {
+            if (!options.has("input")) {
+                throw new IllegalArgumentException("--follow needs --input=<path> of an NDJSON file");
+            }
+            String input = options.get("input", null);
+            return new FollowingNdjsonEventSource(Paths.get(input),
+                    Paths.get(options.get("checkpoint", input + ".offset")),
+                    options.getLong("checkpoint-interval-ms", 1000));
+        }
+        if ("ndjson".equals(options.get("format", "json"))) {
+            if (!options.has("input")) {
+                throw new IllegalArgumentException("--format=ndjson needs --input=<path> to memory-map");
+            }
+            int chunkMb = options.getInt("chunk-mb", 64);
+            if (chunkMb < 1 || chunkMb > 2047) {  // each chunk is one MappedByteBuffer, at most 2 GB
+                throw new IllegalArgumentException("--chunk-mb must be between 1 and 2047: " + chunkMb);
+            }
+            long chunkBytes = (long) chunkMb << 20;
+            return new MappedNdjsonEventSource(Paths.get(options.get("input", null)),
+                    options.getInt("parser-threads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                    (int) chunkBytes);
+        }
+        if (!options.has("stream")) {
+            return EventSource.of(getEventsFromFile(options));
+        }
+        InputStream inputStream = getPayloadInputStream(options);
+        if (inputStream == null) {
+            System.out.println("payloads.json not found in either classpath or current directory");
+            return EventSource.of(Collections.emptyList());
+        }
+        return new StreamingJsonEventSource(inputStream);
+    }
+
+    private static List<JsonNode> getEventsFromFile(RouterOptions options) {
         List<JsonNode> events = new ArrayList<>();
-        try (InputStream inputStream = getPayloadInputStream()) {
+        try (InputStream inputStream = getPayloadInputStream(options)) {
             if (inputStream == null) {
                 System.out.println("payloads.json not found in either classpath or current directory");
                 return events;
@@ -108,7 +587,10 @@ public class EventRouter {
         return events;
     }
 
-    private static InputStream getPayloadInputStream() throws FileNotFoundException {
+    private static InputStream getPayloadInputStream(RouterOptions options) throws FileNotFoundException {
+        if (options.has("input")) {
+            return new FileInputStream(options.get("input", null));
+        }
         InputStream inputStream = EventRouter.class.getClassLoader().getResourceAsStream("payloads.json");
         if (inputStream == null) {
             File file = new File("payloads.json");
@@ -119,7 +601,189 @@ public class EventRouter {
         return inputStream;
     }
 
-    private static String capitalize(String s) {
-        return s.substring(0, 1).toUpperCase() + s.substring(1);
+    /**
+     * Creates a sender per publishing thread: a Direct publisher, or with --persistent a
+     * Guaranteed publisher with a bounded window of unacknowledged messages. With --services=n,
+     * publishing threads are spread round-robin over n broker connections.
+     */
+    private static final class Publishers {
+        private final RouterOptions options;
+        private final List<MessagingService> services = new ArrayList<>();
+        private final List<DirectMessagePublisher> directPublishers = new ArrayList<>();
+        private final List<WindowedPersistentPublisher> persistentPublishers = new ArrayList<>();
+
+        private Publishers(RouterOptions options, Properties solaceProps, MessagingService messagingService) {
+            this.options = options;
+            services.add(messagingService);
+            for (int i = 1; i < options.getInt("services", 1); i++) {
+                services.add(connect(solaceProps));
+            }
+        }
+
+        private MessagingService serviceFor(int thread) {
+            return services.get(thread % services.size());
+        }
+
+        private synchronized MessageSender create(int thread) {
+            MessagingService messagingService = serviceFor(thread);
+            if (options.has("persistent")) {
+                PersistentMessagePublisher publisher = messagingService.createPersistentMessagePublisherBuilder()
+                        .onBackPressureWait(1)
+                        .build()
+                        .start();
+                WindowedPersistentPublisher windowed = new WindowedPersistentPublisher(publisher, options.getInt("window", 256));
+                persistentPublishers.add(windowed);
+                return windowed;
+            }
+            DirectMessagePublisher publisher = messagingService.createDirectMessagePublisherBuilder()
+                    .onBackPressureWait(1)
+                    .build()
+                    .start();
+            directPublishers.add(publisher);
+            return (message, topic, sourceRecord) -> publisher.publish(message, topic);
+        }
+
+        /** Waits for outstanding ACKs, stops all publishers and closes the extra connections. */
+        private void terminate(long ackTimeoutMs) throws InterruptedException {
+            for (WindowedPersistentPublisher persistentPublisher : persistentPublishers) {
+                persistentPublisher.terminate(ackTimeoutMs);
+                System.out.println("Guaranteed: " + persistentPublisher);
+            }
+            for (DirectMessagePublisher directPublisher : directPublishers) {
+                directPublisher.terminate(1000);
+            }
+            for (MessagingService extra : services.subList(1, services.size())) {
+                extra.disconnect();
+            }
+        }
+    }
+
+    /** What all publishing threads share: message ids, topic resolution and statistics. */
+    private static final class Shared {
+        private final MessageIdGenerator messageIds;
+        private final TopicCache topicCache;
+        private final RoutingTable routingTable;
+        private final PublishStats stats;
+        private final LongAdder malformed = new LongAdder();  // events skipped for a missing routing field
+
+        private Shared(MessageIdGenerator messageIds, TopicCache topicCache, RoutingTable routingTable, PublishStats stats) {
+            this.messageIds = messageIds;
+            this.topicCache = topicCache;
+            this.routingTable = routingTable;
+            this.stats = stats;
+        }
+    }
+
+    /**
+     * Builds and publishes one event at a time, to one topic or, with a routing table, to each
+     * topic its rule fans out to. Holds its own message builder, so each publishing thread needs
+     * its own instance.
+     */
+    private static final class EventPublisher implements Consumer<JsonNode> {
+        private final OutboundMessageBuilder messageBuilder;
+        private final MessageSender sender;
+        private final SampledLogger messageLog;
+        private final Shared shared;
+        private final List<Topic> topics = new ArrayList<>();
+
+        private EventPublisher(MessagingService messagingService, MessageSender sender, SampledLogger messageLog,
+                               Shared shared) {
+            this.messageBuilder = messagingService.messageBuilder();
+            this.sender = sender;
+            this.messageLog = messageLog;
+            this.shared = shared;
+        }
+
+        @Override
+        public void accept(JsonNode event) {
+            topics.clear();
+            if (shared.routingTable != null) {
+                if (shared.routingTable.route(event, topics) == 0) {
+                    return;  // dropped by a rule
+                }
+            } else {
+                for (String field : TopicCache.ROUTING_FIELDS) {
+                    if (event.get(field) == null) {
+                        shared.malformed.increment();  // no topic to route it to: count and skip
+                        return;
+                    }
+                }
+                topics.add(shared.topicCache != null ? shared.topicCache.get(event) : Topic.of(buildTopicName(event)));
+            }
+            String messageContent = event.toString();
+            int payloadBytes = utf8Length(messageContent);  // what goes on the wire, not the UTF-16 char count
+            String messageId = shared.messageIds.nextId();
+
+            OutboundMessage outboundMessage = messageBuilder
+                    .withProperty("messageId", messageId)
+                    .build(messageContent);
+
+            for (int i = 0; i < topics.size(); i++) {
+                Topic topic = topics.get(i);
+                sender.send(outboundMessage, topic, event);
+
+                shared.stats.record(event, payloadBytes);
+                if (messageLog.isSampled()) {
+                    messageLog.log("Published to Topic: {} | Message: {} | Message ID: {}",
+                            topic.getName(), messageContent, messageId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes the original event bytes as a binary message. Like {@link EventPublisher}, one
+     * instance per publishing thread.
+     */
+    private static final class RawEventPublisher implements Consumer<RawEvent> {
+        private final OutboundMessageBuilder messageBuilder;
+        private final MessageSender sender;
+        private final SampledLogger messageLog;
+        private final Shared shared;
+        private final List<Topic> topics = new ArrayList<>();
+
+        private RawEventPublisher(MessagingService messagingService, MessageSender sender, SampledLogger messageLog,
+                                  Shared shared) {
+            this.messageBuilder = messagingService.messageBuilder();
+            this.sender = sender;
+            this.messageLog = messageLog;
+            this.shared = shared;
+        }
+
+        @Override
+        public void accept(RawEvent event) {
+            String[] routingValues = event.getFields();
+            topics.clear();
+            if (shared.routingTable != null) {
+                if (shared.routingTable.route(routingValues, topics) == 0) {
+                    return;  // dropped by a rule
+                }
+            } else {
+                for (int i = 0; i < TopicCache.ROUTING_FIELDS.length; i++) {
+                    if (routingValues[i] == null) {
+                        shared.malformed.increment();  // no topic to route it to: count and skip
+                        return;
+                    }
+                }
+                topics.add(shared.topicCache != null ? shared.topicCache.get(routingValues)
+                        : Topic.of(buildTopicName(routingValues)));
+            }
+            String messageId = shared.messageIds.nextId();
+
+            OutboundMessage outboundMessage = messageBuilder
+                    .withProperty("messageId", messageId)
+                    .build(event.getPayload());  // the input bytes as-is
+
+            for (int i = 0; i < topics.size(); i++) {
+                Topic topic = topics.get(i);
+                sender.send(outboundMessage, topic, event);
+
+                shared.stats.record(routingValues, event.getPayload().length);
+                if (messageLog.isSampled()) {
+                    messageLog.log("Published to Topic: {} | Message: {} bytes | Message ID: {}",
+                            topic.getName(), Unbox.box(event.getPayload().length), messageId);
+                }
+            }
+        }
     }
 }
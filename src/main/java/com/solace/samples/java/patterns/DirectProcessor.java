@@ -26,12 +26,18 @@ import com.solace.messaging.publisher.DirectMessagePublisher;
 import com.solace.messaging.publisher.OutboundMessage;
 import com.solace.messaging.publisher.OutboundMessageBuilder;
 import com.solace.messaging.receiver.DirectMessageReceiver;
+import com.solace.messaging.receiver.InboundMessage;
 import com.solace.messaging.receiver.MessageReceiver.MessageHandler;
 import com.solace.messaging.resources.Topic;
 import com.solace.messaging.resources.TopicSubscription;
+import com.solace.samples.java.perf.MicroBatcher;
+import com.solace.samples.java.perf.TopicRewriter;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A Processor is a microservice or application that receives a message, does something with the info,
@@ -39,6 +45,11 @@ import java.util.Properties;
  * it has received an input message.
  * This class is meant to be used with DirectPub and DirectSub, intercepting the published messages and
  * sending them on to a different topic.
+ * <p>
+ * With <code>-Dbatch.size=N</code>, inbound messages are gathered into micro-batches of up to N,
+ * waiting at most <code>-Dbatch.lingerMicros</code> (default 100) for a batch to fill. Each batch
+ * is transformed in one call and its results are published back-to-back on the batcher thread.
+ * Run with different sizes to compare the throughput gained against the latency added.
  */
 public class DirectProcessor {
 
@@ -46,8 +57,8 @@ public class DirectProcessor {
     private static final String TOPIC_PREFIX = "solace/samples/";  // used as the topic "root"
     private static final String API = "Java";
     
-    private static volatile int msgRecvCounter = 0;              // num messages received
-    private static volatile int msgSentCounter = 0;                   // num messages sent
+    private static final LongAdder msgRecvCounter = new LongAdder();  // num messages received
+    private static final LongAdder msgSentCounter = new LongAdder();  // num messages sent
     private static volatile boolean isShutdown = false;  // are we done yet?
 
     /** Main method. */
@@ -100,45 +111,101 @@ public class DirectProcessor {
         receiver.start();
         
         OutboundMessageBuilder messageBuilder = messagingService.messageBuilder();
+        // .../direct/pub/<rest> -> solace/samples/java/direct/upper/<rest>, parsed in place and cached
+        final TopicRewriter topicRewriter = new TopicRewriter(TOPIC_PREFIX + "*/direct/pub",
+                TOPIC_PREFIX + API.toLowerCase() + "/direct/upper", 10_000);
 
-        final MessageHandler messageHandler = (inboundMsg) -> {  // async message callback handler
-            String inboundTopic = inboundMsg.getDestinationName();
-            if (inboundTopic.contains("/direct/pub/")) {  // simple validation of topic
-                // how to "process" the incoming message? maybe do a DB lookup? add some additional properties? or change the payload?
-                final String upperCaseMessage = inboundTopic.toUpperCase();  // as a silly example of "processing"
-                
-                OutboundMessage outboundMsg = messageBuilder.build(upperCaseMessage);  // build TextMessage to send
-                String [] inboundTopicLevels = inboundTopic.split("/",6);
-                String outboundTopic = new StringBuilder(TOPIC_PREFIX).append(API.toLowerCase())
-                		.append("/direct/upper/").append(inboundTopicLevels[5]).toString();  // to "upper" topic
+        final int batchSize = Integer.getInteger("batch.size", 0);
+        final MicroBatcher<InboundMessage> batcher;
+        final MessageHandler messageHandler;
+        if (batchSize > 0) {
+            final OutboundMessage[] outboundMsgs = new OutboundMessage[batchSize];  // reused for every batch
+            final Topic[] outboundTopics = new Topic[batchSize];
+            batcher = new MicroBatcher<>(SAMPLE_NAME, batchSize,
+                    TimeUnit.MICROSECONDS.toNanos(Long.getLong("batch.lingerMicros", 100)),
+                    Math.max(8192, batchSize * 4), batch -> {
+                // builder, rewriter and publisher are only used on this batcher thread now
+                final int count = transform(batch, messageBuilder, topicRewriter, outboundMsgs, outboundTopics);
                 try {
-                    publisher.publish(outboundMsg, Topic.of(outboundTopic));
+                    for (int i = 0; i < count; i++) {  // back-to-back
+                        publisher.publish(outboundMsgs[i], outboundTopics[i]);
+                        outboundMsgs[i] = null;
+                        msgSentCounter.increment();
+                    }
                 } catch (RuntimeException e) {  // threw from send(), only thing that is throwing here
                     System.out.printf("### Caught while trying to publisher.publish(): %s%n",e);
                     isShutdown = true;
                 }
-            } else {
-            	// received a message that I wasn't expecting... handle it here somehow
-            }
-        };
+            });
+            messageHandler = (inboundMsg) -> {  // async message callback handler: just hand over
+                msgRecvCounter.increment();
+                batcher.offer(inboundMsg);
+            };
+        } else {
+            batcher = null;
+            messageHandler = (inboundMsg) -> {  // async message callback handler
+                msgRecvCounter.increment();
+                String inboundTopic = inboundMsg.getDestinationName();
+                final Topic outboundTopic = topicRewriter.rewrite(inboundTopic);  // to "upper" topic, null if not ours
+                if (outboundTopic != null) {  // simple validation of topic
+                    // how to "process" the incoming message? maybe do a DB lookup? add some additional properties? or change the payload?
+                    final String upperCaseMessage = inboundTopic.toUpperCase();  // as a silly example of "processing"
+                
+                    OutboundMessage outboundMsg = messageBuilder.build(upperCaseMessage);  // build TextMessage to send
+                    try {
+                        publisher.publish(outboundMsg, outboundTopic);
+                        msgSentCounter.increment();
+                    } catch (RuntimeException e) {  // threw from send(), only thing that is throwing here
+                        System.out.printf("### Caught while trying to publisher.publish(): %s%n",e);
+                        isShutdown = true;
+                    }
+                } else {
+                	// received a message that I wasn't expecting... handle it here somehow
+                }
+            };
+        }
         receiver.receiveAsync(messageHandler);  // non-blocking receiver (vs. blocking receive() method)
 
         System.out.println(API + " " + SAMPLE_NAME + " connected, and running. Press [ENTER] to quit.");
         while (System.in.available() == 0 && !isShutdown) {  // time to loop!
             try {
-                System.out.printf("%s %s Received -> Published msgs/s: %,d -> %,d%n",
-                        API, SAMPLE_NAME, msgRecvCounter, msgSentCounter);  // simple way of calculating message rates
-                msgRecvCounter = 0;
-                msgSentCounter = 0;
                 Thread.sleep(1000);  // take a pause
+                System.out.printf("%s %s Received -> Published msgs/s: %,d -> %,d%n", API, SAMPLE_NAME,
+                        msgRecvCounter.sumThenReset(), msgSentCounter.sumThenReset());  // simple way of calculating message rates
+                if (batcher != null) {
+                    batcher.printInterval();
+                }
             } catch (InterruptedException e) {
                 // Thread.sleep() interrupted... probably getting shut down
             }
         }
         isShutdown = true;
+        receiver.terminate(500);  // stop the input first
+        if (batcher != null) {
+            batcher.close();  // publish what is already queued
+            System.out.println("Batching: " + batcher);
+        }
         publisher.terminate(500);
-        receiver.terminate(500);
         messagingService.disconnect();
         System.out.println("Main thread quitting.");
     }
+
+    /**
+     * The user transform: turns a batch of inbound messages into outbound messages and their
+     * topics, skipping messages that are not ours, and returns how many it produced. Work that
+     * can be shared, e.g. one database round-trip for the whole batch, is done once per batch.
+     */
+    private static int transform(List<InboundMessage> batch, OutboundMessageBuilder messageBuilder,
+                                 TopicRewriter topicRewriter, OutboundMessage[] outboundMsgs, Topic[] outboundTopics) {
+        int count = 0;
+        for (InboundMessage inboundMsg : batch) {
+            final String inboundTopic = inboundMsg.getDestinationName();
+            final Topic outboundTopic = topicRewriter.rewrite(inboundTopic);  // to "upper" topic, null if not ours
+            if (outboundTopic != null) {
+                outboundMsgs[count] = messageBuilder.build(inboundTopic.toUpperCase());  // as a silly example of "processing"
+                outboundTopics[count++] = outboundTopic;
+            }
+        }
+        return count;
+    }
 }
@@ -17,12 +17,15 @@
 package com.solace.samples.java.patterns;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
-import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.solace.messaging.MessagingService;
 import com.solace.messaging.config.SolaceProperties.AuthenticationProperties;
@@ -34,23 +37,39 @@ import com.solace.messaging.publisher.DirectMessagePublisher;
 import com.solace.messaging.publisher.OutboundMessage;
 import com.solace.messaging.publisher.OutboundMessageBuilder;
 import com.solace.messaging.resources.Topic;
+import com.solace.samples.java.perf.AllocationMeter;
+import com.solace.samples.java.perf.LatencyStamp;
+import com.solace.samples.java.perf.MessageIdGenerator;
+import com.solace.samples.java.perf.OpenLoopPacer;
+import com.solace.samples.java.perf.RateLimiter;
+import com.solace.samples.java.perf.SequenceTracker;
 
 /**
  * A more performant sample that shows an application that publishes.
+ * <p>
+ * Tuning options, as system properties:
+ * <ul>
+ *   <li><code>-Dthreads=N</code> publish from N threads, splitting the rate between them (default 1)</li>
+ *   <li><code>-Dpublishers=shared|per-thread</code> one DirectMessagePublisher for all threads, or one each (default shared)</li>
+ *   <li><code>-DopenLoop.rate=&lt;msg/s&gt;</code> open-loop pacing, measured from intended send times</li>
+ *   <li><code>-Dlatency=true</code> stamp payloads for a latency-mode receiver</li>
+ *   <li><code>-Dsequence=true</code> number each thread's messages per topic, for a receiver's loss check</li>
+ *   <li><code>-Dreference=true</code> the reference max-rate mode: unpaced, and allocation-free after startup</li>
+ * </ul>
  */
 public class DirectPublisher {
     
     private static final String SAMPLE_NAME = DirectPublisher.class.getSimpleName();
     private static final String TOPIC_PREFIX = "solace/samples/";  // used as the topic "root"
     private static final String API = "Java";
-    private static final int APPROX_MSG_RATE_PER_SEC = 100;
+    private static final int APPROX_MSG_RATE_PER_SEC = 100;  // across all publishing threads
     private static final int PAYLOAD_SIZE = 100;
     
-    private static volatile int msgSentCounter = 0;                   // num messages sent
+    private static final LongAdder msgSentCounter = new LongAdder();  // num messages sent, by all threads
     private static volatile boolean isShutdown = false;
 
     /** Main method. */
-    public static void main(String... args) throws IOException {
+    public static void main(String... args) throws IOException, InterruptedException {
         if (args.length < 3) {  // Check command line arguments
             System.out.printf("Usage: %s <host:port> <message-vpn> <client-username> [password]%n%n", SAMPLE_NAME);
             System.exit(-1);
@@ -84,6 +103,89 @@ public class DirectPublisher {
             System.out.println("### RECONNECTED: "+serviceEvent);
         });
         
+        // -Dthreads=N publishes from N threads, sharing one DirectMessagePublisher unless -Dpublishers=per-thread
+        final int threadCount = Integer.getInteger("threads", 1);
+        final boolean perThreadPublishers = "per-thread".equals(System.getProperty("publishers", "shared"));
+        // open-loop mode (-DopenLoop.rate=<msg/s>): send on a fixed schedule that never slips, and measure
+        // from each message's intended send time, so back-pressure stalls show up in the numbers
+        final String openLoopRate = System.getProperty("openLoop.rate");
+        // reference max-rate mode (-Dreference=true): republish prebuilt messages, unpaced, allocating nothing per message
+        final boolean referenceMode = Boolean.getBoolean("reference");
+        if (referenceMode && (openLoopRate != null || LatencyStamp.isEnabled() || SequenceTracker.isEnabled())) {
+            throw new IllegalArgumentException("-Dreference=true cannot be combined with -DopenLoop.rate, -Dlatency"
+                    + " or -Dsequence, which change every message");
+        }
+
+        final List<DirectMessagePublisher> publishers = new ArrayList<>();
+        final MessageIdGenerator messageIds = MessageIdGenerator.create("counter");  // thread-safe; "uuid" for UUID-style ids
+        final List<PublishLoop> loops = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            if (i == 0 || perThreadPublishers) {
+                publishers.add(startPublisher(messagingService));
+            }
+            // each thread paces its share of the total rate
+            OpenLoopPacer openLoop = openLoopRate == null ? null
+                    : new OpenLoopPacer(Double.parseDouble(openLoopRate) / threadCount, TimeUnit.MILLISECONDS.toNanos(1));
+            loops.add(new PublishLoop(messagingService, publishers.get(publishers.size() - 1), messageIds,
+                    new RateLimiter(APPROX_MSG_RATE_PER_SEC / (double) threadCount), openLoop, referenceMode,
+                    SequenceTracker.isEnabled() ? senderId(i) : null));
+        }
+        
+        // make a thread for printing message rate stats
+        ScheduledExecutorService statsPrintingThread = Executors.newSingleThreadScheduledExecutor();
+        statsPrintingThread.scheduleAtFixedRate(() -> {
+            System.out.printf("Published msgs/s: %,d%n",msgSentCounter.sumThenReset());  // simple way of calculating message rates
+            for (PublishLoop loop : loops) {
+                if (loop.openLoop != null) {
+                    loop.openLoop.printInterval();
+                }
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+
+        System.out.println(API + " " + SAMPLE_NAME + " connected, and running. Press [ENTER] to quit.");
+        System.out.printf("Publishing on %d thread(s) with %d publisher(s)%s%n", threadCount, publishers.size(),
+                referenceMode ? ", reference max-rate mode" : "");
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(loops.get(i), SAMPLE_NAME + "-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        // block the main thread, waiting for a quit signal
+        while (System.in.available() == 0 && !isShutdown) {
+            Thread.sleep(100);
+        }
+        isShutdown = true;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        statsPrintingThread.shutdown();  // stop printing stats
+        long totalSent = 0;
+        double totalRate = 0;
+        for (int i = 0; i < threadCount; i++) {
+            PublishLoop loop = loops.get(i);
+            System.out.println("Thread " + i + ": " + loop);
+            totalSent += loop.sent;
+            totalRate += loop.getRate();
+            if (loop.openLoop != null) {
+                loop.openLoop.writePercentileFile(System.getProperty("openLoop.file", SAMPLE_NAME + "-response-time")
+                        + (threadCount > 1 ? "-" + i : "") + ".hgrm");
+            }
+        }
+        System.out.printf("Published %,d msgs on %d thread(s): %,.1f msg/s in total%n", totalSent, threadCount, totalRate);
+        for (DirectMessagePublisher publisher : publishers) {
+            publisher.terminate(500);
+        }
+        messagingService.disconnect();
+        System.out.println("Main thread quitting.");
+    }
+
+    /** Unique per thread and per run, so a receiver tracks each thread's per-topic sequences separately. */
+    private static String senderId(int thread) {
+        return SAMPLE_NAME + "/" + ManagementFactory.getRuntimeMXBean().getName() + "/" + thread;  // name is pid@host
+    }
+
+    private static DirectMessagePublisher startPublisher(MessagingService messagingService) {
         // build the publisher object
         final DirectMessagePublisher publisher = messagingService.createDirectMessagePublisherBuilder()
                 .onBackPressureWait(1)
@@ -94,46 +196,150 @@ public class DirectPublisher {
         publisher.setPublishFailureListener(e -> {
             System.out.println("### FAILED PUBLISH "+e);
         });
-        
-        // make a thread for printing message rate stats
-        ScheduledExecutorService statsPrintingThread = Executors.newSingleThreadScheduledExecutor();
-        statsPrintingThread.scheduleAtFixedRate(() -> {
-            System.out.printf("Published msgs/s: %,d%n",msgSentCounter);  // simple way of calculating message rates
-            msgSentCounter = 0;
-        }, 1, 1, TimeUnit.SECONDS);
+        return publisher;
+    }
 
-        System.out.println(API + " " + SAMPLE_NAME + " connected, and running. Press [ENTER] to quit.");
-        byte[] payload = new byte[PAYLOAD_SIZE];  // preallocate memory, for reuse, for performance
-        OutboundMessageBuilder messageBuilder = messagingService.messageBuilder();
-        // block the main thread, waiting for a quit signal
-        while (System.in.available() == 0 && !isShutdown) {
-            try {
-                // each loop, change the payload, less trivial
-                char chosenCharacter = (char)(Math.round(msgSentCounter % 26) + 65);  // rotate through letters [A-Z]
-                Arrays.fill(payload,(byte)chosenCharacter);  // fill the payload completely with that char
-                messageBuilder.withProperty(MessageProperties.APPLICATION_MESSAGE_ID, UUID.randomUUID().toString());  // as an example of a header
-                OutboundMessage message = messageBuilder.build(payload);  // binary payload message
+    /**
+     * One publishing thread. It has its own message builder, payload buffer and topics; threads
+     * share only the publisher (if not per-thread) and the thread-safe message id generator.
+     */
+    private static final class PublishLoop implements Runnable {
+        private final DirectMessagePublisher publisher;
+        private final OutboundMessageBuilder messageBuilder;  // not thread-safe, so one per thread
+        private final MessageIdGenerator messageIds;
+        private final RateLimiter rateLimiter;
+        private final OpenLoopPacer openLoop;
+        private final byte[] payload = new byte[PAYLOAD_SIZE];  // preallocate memory, for reuse, for performance
+        private final Topic[] topics = new Topic[26];  // one per letter [A-Z], built once
+        private final OutboundMessage[] prebuilt;  // reference mode: one message per letter, built once and republished
+        private final boolean latencyMode = LatencyStamp.isEnabled();  // -Dlatency=true: stamp seq + send time for the receiver
+        private final long[] topicSequences;  // -Dsequence=true: last sequence number sent per letter, else null
+        private long sent;  // read by main only after join()
+        private long startNanos;
+        private long endNanos;
+        private String allocationReport;
+
+        private PublishLoop(MessagingService messagingService, DirectMessagePublisher publisher,
+                            MessageIdGenerator messageIds, RateLimiter rateLimiter, OpenLoopPacer openLoop,
+                            boolean referenceMode, String senderId) {
+            this.publisher = publisher;
+            this.messageBuilder = messagingService.messageBuilder();
+            if (senderId != null) {
+                messageBuilder.withSenderId(senderId);  // stays on the builder for every message
+                topicSequences = new long[26];
+            } else {
+                topicSequences = null;
+            }
+            this.messageIds = messageIds;
+            this.rateLimiter = rateLimiter;
+            this.openLoop = openLoop;
+            for (int i = 0; i < topics.length; i++) {
                 // dynamic topics!!
-                String topicString = new StringBuilder(TOPIC_PREFIX).append(API.toLowerCase())
-                		.append("/direct/pub/").append(chosenCharacter).toString();  // StringBuilder faster than +
-                publisher.publish(message,Topic.of(topicString));  // send the message
-                msgSentCounter++;  // add one
-            } catch (RuntimeException e) {  // threw from publish(), only thing that is throwing here
-                System.out.printf("### Caught while trying to publisher.publish(): %s%n",e);
-                isShutdown = true;  // or try to handle the specific exception more gracefully
-            } finally {
+                topics[i] = Topic.of(new StringBuilder(TOPIC_PREFIX).append(API.toLowerCase())
+                        .append("/direct/pub/").append((char) ('A' + i)).toString());  // StringBuilder faster than +
+            }
+            if (referenceMode) {
+                // build() allocates a new message (~12 KB with API 1.7) every time, but an OutboundMessage is
+                // immutable and can be published any number of times, so build each payload variant once
+                prebuilt = new OutboundMessage[topics.length];
+                for (int i = 0; i < prebuilt.length; i++) {
+                    byte[] variant = new byte[PAYLOAD_SIZE];
+                    Arrays.fill(variant, (byte) ('A' + i));
+                    prebuilt[i] = messageBuilder.build(variant);
+                }
+            } else {
+                prebuilt = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            AllocationMeter allocations = new AllocationMeter();  // this thread's heap allocations while publishing
+            startNanos = System.nanoTime();
+            if (prebuilt != null) {
+                runReference();
+            } else {
+                runSample();
+            }
+            endNanos = System.nanoTime();
+            allocationReport = allocations.report(sent, "msg");
+        }
+
+        /** The reference max-rate loop: nothing to build, copy, format or wait for. */
+        private void runReference() {
+            int letter = 0;
+            while (!isShutdown) {
                 try {
-                    Thread.sleep(1000 / APPROX_MSG_RATE_PER_SEC);  // do Thread.sleep(0) for max speed
-                    // Note: STANDARD Edition Solace PubSub+ broker is limited to 10k msg/s max ingress
-                } catch (InterruptedException e) {
+                    publisher.publish(prebuilt[letter],topics[letter]);  // send the message
+                    sent++;
+                    msgSentCounter.increment();  // add one
+                } catch (RuntimeException e) {  // threw from publish(), only thing that is throwing here
+                    System.out.printf("### Caught while trying to publisher.publish(): %s%n",e);
                     isShutdown = true;
                 }
+                if (++letter == prebuilt.length) {  // rotate through letters [A-Z]
+                    letter = 0;
+                }
             }
         }
-        isShutdown = true;
-        statsPrintingThread.shutdown();  // stop printing stats
-        publisher.terminate(500);
-        messagingService.disconnect();
-        System.out.println("Main thread quitting.");
+
+        private void runSample() {
+            long sequence = 0;
+            while (!isShutdown) {
+                long intendedNanos = 0;  // when this message is due
+                if (openLoop != null) {
+                    try {
+                        intendedNanos = openLoop.awaitNext();
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                try {
+                    // each loop, change the payload, less trivial
+                    int letter = (int) (sent % 26);  // rotate through letters [A-Z]
+                    Arrays.fill(payload,(byte)('A' + letter));  // fill the payload completely with that char
+                    if (latencyMode) {
+                        // overwrites the first LatencyStamp.LENGTH bytes; open loop measures from the intended send time
+                        LatencyStamp.stamp(payload, sequence++,
+                                openLoop != null ? LatencyStamp.toEpochNanos(intendedNanos) : LatencyStamp.nowNanos());
+                    }
+                    messageBuilder.withProperty(MessageProperties.APPLICATION_MESSAGE_ID, messageIds.nextId());  // as an example of a header
+                    if (topicSequences != null) {
+                        messageBuilder.withSequenceNumber(++topicSequences[letter]);  // 1, 2, 3... on each topic
+                    }
+                    OutboundMessage message = messageBuilder.build(payload);  // binary payload message
+                    final long publishStartNanos = System.nanoTime();
+                    publisher.publish(message,topics[letter]);  // send the message
+                    if (openLoop != null) {
+                        openLoop.sent(intendedNanos, publishStartNanos);
+                    }
+                    sent++;
+                    msgSentCounter.increment();  // add one
+                } catch (RuntimeException e) {  // threw from publish(), only thing that is throwing here
+                    System.out.printf("### Caught while trying to publisher.publish(): %s%n",e);
+                    isShutdown = true;  // or try to handle the specific exception more gracefully
+                } finally {
+                    if (openLoop == null) {
+                        try {
+                            rateLimiter.acquire();  // set APPROX_MSG_RATE_PER_SEC to 0 for max speed
+                        } catch (InterruptedException e) {
+                            isShutdown = true;
+                        }
+                    }
+                    // Note: STANDARD Edition Solace PubSub+ broker is limited to 10k msg/s max ingress
+                }
+            }
+        }
+
+        /** Average msg/s over the thread's run. */
+        private double getRate() {
+            return endNanos > startNanos ? sent * 1e9 / (endNanos - startNanos) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d msgs, %,.1f msg/s; %s; ", sent, getRate(), allocationReport)
+                    + (prebuilt != null ? "unpaced" : openLoop != null ? openLoop.toString() : "pacing " + rateLimiter);
+        }
     }
 }
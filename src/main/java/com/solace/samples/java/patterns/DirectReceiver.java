@@ -18,6 +18,9 @@ package com.solace.samples.java.patterns;
 
 import java.io.IOException;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 import com.solace.messaging.MessagingService;
 import com.solace.messaging.config.SolaceProperties.AuthenticationProperties;
@@ -25,11 +28,29 @@ import com.solace.messaging.config.SolaceProperties.ServiceProperties;
 import com.solace.messaging.config.SolaceProperties.TransportLayerProperties;
 import com.solace.messaging.config.profile.ConfigurationProfile;
 import com.solace.messaging.receiver.DirectMessageReceiver;
+import com.solace.messaging.receiver.InboundMessage;
 import com.solace.messaging.receiver.MessageReceiver.MessageHandler;
 import com.solace.messaging.resources.TopicSubscription;
+import com.solace.samples.java.perf.LatencyReporter;
+import com.solace.samples.java.perf.SequenceTracker;
+import com.solace.samples.java.perf.ShardedDispatcher;
 
 /**
  * A more performant sample that shows an application that subscribes.
+ * <p>
+ * By default every message is processed on the API's single dispatch thread, so one slow handler
+ * holds up all of them. To spread processing over worker threads:
+ * <ul>
+ *   <li><code>-Ddispatch.workers=N</code>: hash each message onto one of N workers, keeping the
+ *       order of messages with the same key (default 0, process on the dispatch thread)</li>
+ *   <li><code>-Ddispatch.key=&lt;property&gt;</code>: hash this user property instead of the topic</li>
+ *   <li><code>-Ddispatch.queue=N</code>: max messages queued per worker (default 1024)</li>
+ *   <li><code>-Ddispatch.whenFull=wait|drop</code>: when a worker's queue is full, hold up the
+ *       dispatch thread (default) or drop and count the message</li>
+ *   <li><code>-DprocessingMicros=N</code>: busy-work per message, to simulate a slow handler</li>
+ * </ul>
+ * With <code>-Dsequence=true</code> (on the publisher too), it checks every topic's sequence
+ * numbers and reports gaps, duplicates, reordering and discard indications per topic.
  */
 public class DirectReceiver {
     
@@ -37,7 +58,7 @@ public class DirectReceiver {
     private static final String TOPIC_PREFIX = "solace/samples/";  // used as the topic "root"
     private static final String API = "Java";
     
-    private static volatile int msgRecvCounter = 0;                   // num messages sent
+    private static final LongAdder msgRecvCounter = new LongAdder();  // num messages received, by any thread
     private static volatile boolean hasDetectedDiscard = false;  // detected any discards yet?
     private static volatile boolean isShutdown = false;          // are we done yet?
 
@@ -87,9 +108,20 @@ public class DirectReceiver {
             System.out.println("### FAILED RECEIVE EVENT " + failedReceiveEvent);
         });
 
+        final LatencyReporter latency = LatencyReporter.createIfEnabled(SAMPLE_NAME);  // -Dlatency=true
+        final long processingNanos = TimeUnit.MICROSECONDS.toNanos(Long.getLong("processingMicros", 0));
         final MessageHandler messageHandler = (inboundMessage) -> {
             // do not print anything to console... too slow!
-            msgRecvCounter++;
+            msgRecvCounter.increment();
+            if (processingNanos > 0) {  // simulated work
+                final long until = System.nanoTime() + processingNanos;
+                while (System.nanoTime() < until) {
+                    // busy
+                }
+            }
+            if (latency != null) {
+                latency.record(inboundMessage.getPayloadAsBytes());
+            }
             // since Direct messages, check if there have been any lost any messages
             if (inboundMessage.getMessageDiscardNotification().hasBrokerDiscardIndication() ||
                     inboundMessage.getMessageDiscardNotification().hasInternalDiscardIndication()) {
@@ -102,14 +134,38 @@ public class DirectReceiver {
                 hasDetectedDiscard = true;  // set my own flag
             }
         };
-        receiver.receiveAsync(messageHandler);
+        final ShardedDispatcher<InboundMessage> dispatcher = createDispatcher(messageHandler);
+        final MessageHandler processor = dispatcher == null
+                ? messageHandler
+                : dispatcher::dispatch;  // the dispatch thread only hashes and enqueues
+        final SequenceTracker sequences = SequenceTracker.isEnabled() ? new SequenceTracker() : null;
+        if (sequences == null) {
+            receiver.receiveAsync(processor);
+        } else {
+            receiver.receiveAsync(inboundMessage -> {
+                // check on the dispatch thread, where the order is still the broker's
+                sequences.record(inboundMessage.getDestinationName(), inboundMessage.getSenderId(),
+                        inboundMessage.getSequenceNumber(),
+                        inboundMessage.getMessageDiscardNotification().hasBrokerDiscardIndication(),
+                        inboundMessage.getMessageDiscardNotification().hasInternalDiscardIndication());
+                processor.onMessage(inboundMessage);
+            });
+        }
 
         System.out.println(API + " " + SAMPLE_NAME + " connected, and running. Press [ENTER] to quit.");
         try {
             while (System.in.available() == 0 && !isShutdown) {
                 Thread.sleep(1000);  // wait 1 second
-                System.out.printf("Received msgs/s: %,d%n",msgRecvCounter);  // simple way of calculating message rates
-                msgRecvCounter = 0;
+                System.out.printf("Received msgs/s: %,d%n",msgRecvCounter.sumThenReset());  // simple way of calculating message rates
+                if (dispatcher != null) {
+                    dispatcher.printStats();
+                }
+                if (sequences != null) {
+                    sequences.printInterval();
+                }
+                if (latency != null) {
+                    latency.printInterval();
+                }
                 if (hasDetectedDiscard) {
                     System.out.println("*** Egress discard detected *** : "
                             + SAMPLE_NAME + " unable to keep up with full message rate");
@@ -121,7 +177,38 @@ public class DirectReceiver {
         }
         isShutdown = true;
         receiver.terminate(500);
+        if (dispatcher != null) {
+            dispatcher.close();  // finish what the workers already have queued
+            System.out.printf("Dispatcher dropped %,d msgs in total%n", dispatcher.getDropped());
+        }
+        if (sequences != null) {
+            System.out.println(sequences);
+        }
+        if (latency != null) {
+            latency.writePercentileFile();
+        }
         messagingService.disconnect();
         System.out.println("Main thread quitting.");
     }
+
+    /** Builds the worker pool configured by the <code>dispatch.*</code> system properties, or null to process inline. */
+    private static ShardedDispatcher<InboundMessage> createDispatcher(MessageHandler messageHandler) {
+        final int workers = Integer.getInteger("dispatch.workers", 0);
+        if (workers <= 0) {
+            return null;
+        }
+        final String keyProperty = System.getProperty("dispatch.key");
+        final Function<InboundMessage, String> key = keyProperty == null
+                ? InboundMessage::getDestinationName
+                : msg -> msg.getProperty(keyProperty);  // messages without it all go to worker 0
+        final String whenFull = System.getProperty("dispatch.whenFull", "wait");
+        if (!whenFull.equals("wait") && !whenFull.equals("drop")) {
+            throw new IllegalArgumentException("dispatch.whenFull must be wait or drop: " + whenFull);
+        }
+        final int queueCapacity = Integer.getInteger("dispatch.queue", 1024);
+        System.out.printf("Dispatching to %d workers by %s, %d msgs queued per worker, %s when full%n",
+                workers, keyProperty == null ? "topic" : "property '" + keyProperty + "'", queueCapacity, whenFull);
+        return new ShardedDispatcher<>(SAMPLE_NAME, workers, queueCapacity, whenFull.equals("drop"), key,
+                i -> messageHandler::onMessage);
+    }
 }
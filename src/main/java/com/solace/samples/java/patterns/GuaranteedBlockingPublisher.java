@@ -37,6 +37,7 @@ import com.solace.messaging.publisher.OutboundMessage;
 import com.solace.messaging.publisher.OutboundMessageBuilder;
 import com.solace.messaging.publisher.PersistentMessagePublisher;
 import com.solace.messaging.resources.Topic;
+import com.solace.samples.java.perf.LatencyStamp;
 
 /**
  * A sample that shows an application that blocks on publish
@@ -108,6 +109,8 @@ public class GuaranteedBlockingPublisher {
         byte[] payload = new byte[PAYLOAD_SIZE];  // preallocate memory, for reuse, for performance
         Properties messageProps = new Properties();
         messageProps.put(MessageProperties.PERSISTENT_ACK_IMMEDIATELY, "true");  // TODO Remove when v1.1 API comes out
+        final boolean latencyMode = LatencyStamp.isEnabled();  // -Dlatency=true: stamp seq + send time for the receiver
+        long sequence = 0;
         // loop the main thread, waiting for a quit signal
         while (System.in.available() == 0 && !isShutdown) {
             OutboundMessageBuilder messageBuilder = messagingService.messageBuilder().fromProperties(messageProps);
@@ -115,6 +118,9 @@ public class GuaranteedBlockingPublisher {
                 // each loop, change the payload, less trivial
                 char chosenCharacter = (char)(Math.round(msgSentCounter % 26) + 65);  // rotate through letters [A-Z]
                 Arrays.fill(payload,(byte)chosenCharacter);  // fill the payload completely with that char
+                if (latencyMode) {
+                    LatencyStamp.stamp(payload, sequence++);  // overwrites the first LatencyStamp.LENGTH bytes
+                }
                 OutboundMessage message = messageBuilder.build(payload);  // binary payload message
                 // dynamic topics!!
                 String topicString = new StringBuilder(TOPIC_PREFIX).append(API.toLowerCase())
@@ -124,7 +130,7 @@ public class GuaranteedBlockingPublisher {
                     publisher.publishAwaitAcknowledgement(message,Topic.of(topicString), 2000L);  // wait up to 2 seconds for ACK
                     msgSentCounter++;  // add one
                 } catch (PubSubPlusClientException e) {  // could be different types
-                    logger.warn(String.format("NACK for Message %s - %s", message, e));
+                    logger.warn("NACK for Message {} - {}", message, e.toString());
                 } catch (InterruptedException e) {
                     // got interrupted by someone while waiting for my publish confirm?
                     logger.info("Got interrupted, probably shutting down",e);
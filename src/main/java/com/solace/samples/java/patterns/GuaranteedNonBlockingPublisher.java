@@ -36,6 +36,8 @@ import com.solace.messaging.publisher.OutboundMessage;
 import com.solace.messaging.publisher.OutboundMessageBuilder;
 import com.solace.messaging.publisher.PersistentMessagePublisher;
 import com.solace.messaging.resources.Topic;
+import com.solace.samples.java.perf.LatencyStamp;
+import com.solace.samples.java.perf.RateLimiter;
 
 /**
  * A more performant sample that shows non-blocking
@@ -102,14 +104,14 @@ public class GuaranteedNonBlockingPublisher {
             final PubSubPlusClientException e = publishReceipt.getException();
             if (e == null) {  // no exception, ACK, broker has confirmed receipt
                 OutboundMessage outboundMessage = publishReceipt.getMessage();
-                logger.debug(String.format("ACK for Message %s", outboundMessage));  // good enough, the broker has it now
+                logger.debug("ACK for Message {}", outboundMessage);  // good enough, the broker has it now
             } else {// not good, a NACK
                 Object userContext = publishReceipt.getUserContext();  // optionally set at publish()
                 if (userContext != null) {
-                    logger.warn(String.format("NACK for Message %s - %s", userContext, e));
+                    logger.warn("NACK for Message {} - {}", userContext, e.toString());
                 } else {
                     OutboundMessage outboundMessage = publishReceipt.getMessage();  // which message got NACKed?
-                    logger.warn(String.format("NACK for Message %s - %s", outboundMessage, e));
+                    logger.warn("NACK for Message {} - {}", outboundMessage, e.toString());
                 }
             }
         });
@@ -124,6 +126,9 @@ public class GuaranteedNonBlockingPublisher {
         System.out.println("Publishing to topic '"+ TOPIC_PREFIX + API.toLowerCase() + 
                 "/pers/pub/...', please ensure queue has matching subscription."); 
         byte[] payload = new byte[PAYLOAD_SIZE];  // preallocate memory, for reuse, for performance
+        final RateLimiter rateLimiter = new RateLimiter(APPROX_MSG_RATE_PER_SEC);  // nanosecond pacing, not sleep(ms)
+        final boolean latencyMode = LatencyStamp.isEnabled();  // -Dlatency=true: stamp seq + send time for the receiver
+        long sequence = 0;
         // loop the main thread, waiting for a quit signal
         while (System.in.available() == 0 && !isShutdown) {
             OutboundMessageBuilder messageBuilder = messagingService.messageBuilder();
@@ -131,6 +136,9 @@ public class GuaranteedNonBlockingPublisher {
                 // each loop, change the payload, less trivial
                 char chosenCharacter = (char)(Math.round(msgSentCounter % 26) + 65);  // rotate through letters [A-Z]
                 Arrays.fill(payload,(byte)chosenCharacter);  // fill the payload completely with that char
+                if (latencyMode) {
+                    LatencyStamp.stamp(payload, sequence++);  // overwrites the first LatencyStamp.LENGTH bytes
+                }
                 OutboundMessage message = messageBuilder.build(payload);  // binary payload message
                 // dynamic topics!!
                 String topicString = new StringBuilder(TOPIC_PREFIX).append("java/pers/pub/").append(chosenCharacter).toString();
@@ -141,7 +149,7 @@ public class GuaranteedNonBlockingPublisher {
                 isShutdown = true;  // just example, maybe look to see if recoverable
             } finally {
                 try {
-                    Thread.sleep(1000 / APPROX_MSG_RATE_PER_SEC);  // do Thread.sleep(0) for max speed
+                    rateLimiter.acquire();  // set APPROX_MSG_RATE_PER_SEC to 0 for max speed
                     // Note: STANDARD Edition Solace PubSub+ broker is limited to 10k msg/s max ingress
                 } catch (InterruptedException e) {
                     isShutdown = true;
@@ -150,6 +158,7 @@ public class GuaranteedNonBlockingPublisher {
         }    
         isShutdown = true;
         statsPrintingThread.shutdown();  // stop printing stats
+        System.out.println("Publish rate: " + rateLimiter);
         publisher.terminate(1500);
         Thread.sleep(1500);  // give time for the ACKs to arrive from the broker
         messagingService.disconnect();
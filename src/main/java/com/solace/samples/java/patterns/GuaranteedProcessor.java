@@ -31,6 +31,8 @@ import com.solace.messaging.receiver.InboundMessage;
 import com.solace.messaging.receiver.PersistentMessageReceiver;
 import com.solace.messaging.resources.Queue;
 import com.solace.messaging.resources.Topic;
+import com.solace.samples.java.perf.ParallelStage;
+import com.solace.samples.java.perf.TopicRewriter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -38,7 +40,11 @@ import java.io.IOException;
 import java.util.Properties;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A sample application that publishes a message for every one that it receives.
@@ -47,6 +53,15 @@ import java.util.concurrent.TimeUnit;
  * successfully published outbound messages before it ACKs the received message.
  * This application assumes a queue named <code>q_java_proc</code> has already been
  * created for it, and the topic subscription <code>solace/samples/&ast;/pers/pub/></code>
+ * <p>
+ * With <code>-Dpipeline.workers=N</code> it runs as a pipeline instead: this thread only receives,
+ * N worker threads build the outbound messages in parallel, and a publish thread sends them with
+ * up to <code>-Dpipeline.window</code> (default 256) unacknowledged at once. The stages are joined
+ * by bounded lock-free ring buffers. Inbound messages are still only ACKed once their outbound
+ * message is confirmed, and one whose transform threw is logged and left unACKed. Messages are
+ * published in queue order unless <code>-Dpipeline.ordered=false</code>. If no receipt frees a
+ * window slot for 5 s during shutdown, the publish thread stops publishing and leaves the rest
+ * unACKed for redelivery.
  */
 public class GuaranteedProcessor {
 
@@ -57,8 +72,8 @@ public class GuaranteedProcessor {
 
 //    private static PersistentMessageReceiver receiver;
 
-    private static volatile int msgSentCounter = 0;                 // num messages sent
-    private static volatile int msgRecvCounter = 0;                 // num messages received
+    private static final LongAdder msgSentCounter = new LongAdder();  // num messages sent
+    private static final LongAdder msgRecvCounter = new LongAdder();  // num messages received
     private static volatile boolean isShutdown = false;             // are we done?
 
     // remember to add log4j2.xml to your classpath
@@ -108,7 +123,10 @@ public class GuaranteedProcessor {
                 .onBackPressureWait(1)
                 .build();
         publisher.start();
-        publisher.setMessagePublishReceiptListener(new PublishCallbackHandler());
+        final int pipelineWorkers = Integer.getInteger("pipeline.workers", 0);
+        final int windowSize = Integer.getInteger("pipeline.window", 256);
+        final Semaphore window = pipelineWorkers > 0 ? new Semaphore(windowSize) : null;  // publish permits
+        publisher.setMessagePublishReceiptListener(new PublishCallbackHandler(window));
 
         // this receiver assumes the queue already exists and has a topic subscription mapped to it
         // if not, first create queue with PubSub+Manager, or SEMP management API
@@ -133,58 +151,174 @@ public class GuaranteedProcessor {
         ScheduledExecutorService statsPrintingThread = Executors.newSingleThreadScheduledExecutor();
         statsPrintingThread.scheduleAtFixedRate(() -> {
             System.out.printf("%s %s Received -> Published msgs/s: %,d -> %,d%n",
-                    API, SAMPLE_NAME, msgRecvCounter, msgSentCounter);  // simple way of calculating message rates
-            msgRecvCounter = 0;
-            msgSentCounter = 0;
+                    API, SAMPLE_NAME, msgRecvCounter.sumThenReset(), msgSentCounter.sumThenReset());  // simple way of calculating message rates
+            if (window != null) {
+                System.out.printf("  %,d of %,d publish permits in use%n", windowSize - window.availablePermits(), windowSize);
+            }
         }, 1, 1, TimeUnit.SECONDS);
 
+        System.out.println(SAMPLE_NAME + " connected, and running. Press [ENTER] to quit.");
+        if (pipelineWorkers > 0) {
+            runPipeline(messagingService, publisher, receiver, pipelineWorkers, window, windowSize);
+        } else {
+            runSingleThreaded(messagingService, publisher, receiver);
+        }
+        isShutdown = true;
+        receiver.terminate(1500L);
+        statsPrintingThread.shutdown();  // stop printing stats
+        Thread.sleep(1000);
+        messagingService.disconnect();
+        System.out.println("Main thread quitting.");
+    }
 
+
+    /**
+     * Receives, processes and publishes on this one thread until [ENTER] is pressed or a publish
+     * fails. Inbound messages are ACKed by the publish receipt callback.
+     */
+    private static void runSingleThreaded(MessagingService messagingService, PersistentMessagePublisher publisher,
+                                          PersistentMessageReceiver receiver) throws IOException {
+        final OutboundMessageBuilder messageBuilder = messagingService.messageBuilder();  // only this thread builds
+        // .../pers/pub/<rest> -> solace/samples/java/pers/upper/<rest>, parsed in place and cached
+        final TopicRewriter topicRewriter = new TopicRewriter(TOPIC_PREFIX + "*/pers/pub",
+                TOPIC_PREFIX + API.toLowerCase() + "/pers/upper", 10_000);
         while (System.in.available() == 0 && !isShutdown) {
             InboundMessage inboundMsg = receiver.receiveMessage(1000);  // blocking receive a message
             if (inboundMsg == null) {  // receive() either got interrupted, or timed out
                 continue;
             }
-            msgRecvCounter++;
+            msgRecvCounter.increment();
             String inboundTopic = inboundMsg.getDestinationName();
-            if (inboundTopic.contains("/pers/pub/")) {  // simple validation of topic
+            final Topic onwardsTopic = topicRewriter.rewrite(inboundTopic);  // null if not ours
+            if (onwardsTopic != null) {  // simple validation of topic
                 // how to "process" the incoming message? maybe do a DB lookup? add some additional properties? or change the payload?
-                OutboundMessageBuilder messageBuilder = messagingService.messageBuilder();
                 final String upperCaseTopic = inboundTopic.toUpperCase();  // as a silly example of "processing"
                 OutboundMessage outboundMsg = messageBuilder.build(upperCaseTopic);
                 try {
-                    String[] inboundTopicLevels = inboundTopic.split("/", 6);
-                    String onwardsTopic = new StringBuilder(TOPIC_PREFIX).append(API.toLowerCase())
-                            .append("/pers/upper/").append(inboundTopicLevels[5]).toString();
-                    ProcessorCorrelationKey ck = new ProcessorCorrelationKey(inboundMsg, outboundMsg, receiver);
-                    publisher.publish(outboundMsg, Topic.of(onwardsTopic), ck);
-                    msgSentCounter++;
-                } catch (ArrayIndexOutOfBoundsException arrayIndexOutOfBoundsException) {
-                    logger.warn("### Caught while trying to publisher.publish()", arrayIndexOutOfBoundsException);
+                    ProcessorCorrelationKey ck = new ProcessorCorrelationKey(inboundMsg, outboundMsg, onwardsTopic, receiver);
+                    publisher.publish(outboundMsg, onwardsTopic, ck);
+                    msgSentCounter.increment();
                 } catch (
                         RuntimeException e) {  // threw from publish(), only thing that is throwing here, but keep trying (unless shutdown?)
                     logger.warn("### Caught while trying to publisher.publish()", e);
                     isShutdown = true;  // just example, maybe look to see if recoverable
                 }
             } else {  // unexpected message. either log or something
-                logger.info("Received an unexpected message with topic " + inboundTopic + ".  Ignoring");
+                logger.info("Received an unexpected message with topic {}.  Ignoring", inboundTopic);
                 receiver.ack(inboundMsg);
             }
         }
+    }
 
 
-        // async queue receive working now, so time to wait until done...
-        System.out.println(SAMPLE_NAME + " connected, and running. Press [ENTER] to quit.");
+    /**
+     * The pipelined processor: receive on this thread, transform on <code>workers</code> threads,
+     * publish on one more. Returns once [ENTER] is pressed and everything received has been
+     * published and its receipt has come back.
+     */
+    private static void runPipeline(MessagingService messagingService, PersistentMessagePublisher publisher,
+                                    PersistentMessageReceiver receiver, int workers, Semaphore window, int windowSize)
+            throws IOException, InterruptedException {
+        final boolean ordered = !"false".equals(System.getProperty("pipeline.ordered"));
+        final ParallelStage<InboundMessage, ProcessorCorrelationKey> transformStage = new ParallelStage<>(
+                SAMPLE_NAME, workers, 1024, ordered, i -> {
+            // neither is thread-safe, so one of each per worker
+            final OutboundMessageBuilder messageBuilder = messagingService.messageBuilder();
+            final TopicRewriter topicRewriter = new TopicRewriter(TOPIC_PREFIX + "*/pers/pub",
+                    TOPIC_PREFIX + API.toLowerCase() + "/pers/upper", 10_000);
+            return inboundMsg -> transform(inboundMsg, messageBuilder, topicRewriter, receiver);
+        }, (inboundMsg, e) -> new ProcessorCorrelationKey(inboundMsg, e, receiver));
+        final AtomicBoolean receiveDone = new AtomicBoolean();  // set after the last offer()
+        final Thread publishStage = new Thread(() -> {
+            int idle = 0;
+            boolean stalled = false;  // no receipts at shutdown: stop publishing, leave the rest unACKed for redelivery
+            while (true) {
+                final ProcessorCorrelationKey ck = transformStage.poll();
+                if (ck == null) {
+                    if (receiveDone.get() && transformStage.isDrained()) {
+                        return;
+                    }
+                    if (++idle > 200) {  // spin, then yield, then park, so an idle pipeline does not burn a core
+                        LockSupport.parkNanos(50_000);
+                    } else if (idle > 100) {
+                        Thread.yield();
+                    }
+                    continue;
+                }
+                idle = 0;
+                if (stalled) {  // keep draining, so the transform workers can finish
+                    continue;
+                }
+                if (ck.failure != null) {  // left unACKed, so the broker redelivers it after a restart
+                    logger.warn("### Transform failed for message on topic " + ck.inboundMsg.getDestinationName(), ck.failure);
+                    continue;
+                }
+                if (ck.onwardsTopic == null) {  // unexpected message. either log or something
+                    logger.info("Received an unexpected message with topic {}.  Ignoring", ck.inboundMsg.getDestinationName());
+                    receiver.ack(ck.inboundMsg);
+                    continue;
+                }
+                try {
+                    int waits = 0;  // one-second waits for a permit since shutdown began
+                    while (!window.tryAcquire(1, TimeUnit.SECONDS)) {  // released by the receipt
+                        if (isShutdown && ++waits == 5) {  // same 5 s as the final wait for receipts below
+                            stalled = true;
+                            break;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    stalled = true;
+                }
+                if (stalled) {
+                    logger.warn("### No publish receipts at shutdown; leaving the remaining messages unACKed for redelivery");
+                    continue;
+                }
+                try {
+                    publisher.publish(ck.outboundMsg, ck.onwardsTopic, ck);
+                    msgSentCounter.increment();
+                } catch (RuntimeException e) {  // threw from publish(), so no receipt is coming
+                    window.release();
+                    logger.warn("### Caught while trying to publisher.publish()", e);
+                    isShutdown = true;  // just example, maybe look to see if recoverable
+                }
+            }
+        }, SAMPLE_NAME + "-publisher");
+        publishStage.start();
+
+        System.out.printf("Pipeline: %d transform workers, %s, publish window %d%n",
+                workers, ordered ? "queue order kept" : "unordered", windowSize);
         while (System.in.available() == 0 && !isShutdown) {
-            Thread.sleep(1000);  // wait 1 second
-            System.out.printf("%s %s Received msgs/s: %,d%n", API, SAMPLE_NAME, msgRecvCounter);  // simple way of calculating message rates
-            msgRecvCounter = 0;
+            InboundMessage inboundMsg = receiver.receiveMessage(1000);  // blocking receive a message
+            if (inboundMsg == null) {  // receive() either got interrupted, or timed out
+                continue;
+            }
+            msgRecvCounter.increment();
+            transformStage.offer(inboundMsg);
         }
         isShutdown = true;
-        receiver.terminate(1500L);
-        statsPrintingThread.shutdown();  // stop printing stats
-        Thread.sleep(1000);
-        messagingService.disconnect();
-        System.out.println("Main thread quitting.");
+        receiveDone.set(true);
+        publishStage.join();
+        transformStage.close();
+        if (window.tryAcquire(windowSize, 5, TimeUnit.SECONDS)) {  // every receipt back, every inbound msg ACKed
+            window.release(windowSize);
+        } else {
+            System.out.printf("### %d message(s) still unacknowledged at shutdown%n", windowSize - window.availablePermits());
+        }
+        System.out.println("Transform stage: " + transformStage);
+    }
+
+    /**
+     * The transform stage, on a worker thread: build the outbound message and its topic, or a
+     * null topic for a message that is not ours.
+     */
+    private static ProcessorCorrelationKey transform(InboundMessage inboundMsg, OutboundMessageBuilder messageBuilder,
+                                                     TopicRewriter topicRewriter, PersistentMessageReceiver receiver) {
+        final String inboundTopic = inboundMsg.getDestinationName();
+        final Topic onwardsTopic = topicRewriter.rewrite(inboundTopic);
+        final OutboundMessage outboundMsg = onwardsTopic == null
+                ? null
+                : messageBuilder.build(inboundTopic.toUpperCase());  // as a silly example of "processing"
+        return new ProcessorCorrelationKey(inboundMsg, outboundMsg, onwardsTopic, receiver);
     }
 
 
@@ -197,12 +331,26 @@ public class GuaranteedProcessor {
 
         private final InboundMessage inboundMsg;
         private final OutboundMessage outboundMsg;
+        private final Topic onwardsTopic;
         private final PersistentMessageReceiver receiver;
+        private final RuntimeException failure;  // pipeline mode: the transform threw, nothing to publish
 
-        private ProcessorCorrelationKey(InboundMessage inboundMsg, OutboundMessage outboundMsg, PersistentMessageReceiver receiver) {
+        private ProcessorCorrelationKey(InboundMessage inboundMsg, OutboundMessage outboundMsg, Topic onwardsTopic,
+                                        PersistentMessageReceiver receiver) {
             this.inboundMsg = inboundMsg;
             this.outboundMsg = outboundMsg;
+            this.onwardsTopic = onwardsTopic;
             this.receiver = receiver;
+            this.failure = null;
+        }
+
+        private ProcessorCorrelationKey(InboundMessage inboundMsg, RuntimeException failure,
+                                        PersistentMessageReceiver receiver) {
+            this.inboundMsg = inboundMsg;
+            this.outboundMsg = null;
+            this.onwardsTopic = null;
+            this.receiver = receiver;
+            this.failure = failure;
         }
     }
 
@@ -213,6 +361,12 @@ public class GuaranteedProcessor {
      **/
     private static class PublishCallbackHandler implements MessagePublishReceiptListener {
 
+        private final Semaphore window;  // pipeline mode: one permit per message in flight, else null
+
+        private PublishCallbackHandler(Semaphore window) {
+            this.window = window;
+        }
+
         @Override
         public void onPublishReceipt(PublishReceipt publishReceipt) {
             Object userContext = publishReceipt.getUserContext();  // optionally set at publish()
@@ -220,7 +374,7 @@ public class GuaranteedProcessor {
             ProcessorCorrelationKey ck = (ProcessorCorrelationKey) userContext;
             if (publishReceipt.getException() != null) {  // NACK, something went wrong
                 final PubSubPlusClientException e = publishReceipt.getException();
-                logger.warn(String.format("NACK for Message %s - %s", ck.outboundMsg, e));
+                logger.warn("NACK for Message {} - {}", ck.outboundMsg, e.toString());
                 // probably want to do something here.  some error handling possibilities:
                 //  - send the message again
                 //  - send it somewhere else (error handling queue?)
@@ -228,7 +382,10 @@ public class GuaranteedProcessor {
                 //  - pause and retry (backoff) - maybe set a flag to slow down the publisher
             } else {  // regular ACK of message, successful publish
                 ck.receiver.ack(ck.inboundMsg);  // ONLY ACK inbound msg off my queue once outbound msg is Guaranteed delivered
-                logger.debug(String.format("ACK for Message %s", ck));  // good enough, the broker has it now
+                logger.debug("ACK for Message {}", ck);  // good enough, the broker has it now
+            }
+            if (window != null) {
+                window.release();  // ACK or NACK, it is no longer in flight
             }
         }
     }
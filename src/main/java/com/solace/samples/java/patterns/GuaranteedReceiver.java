@@ -29,6 +29,7 @@ import com.solace.messaging.config.SolaceProperties.TransportLayerProperties;
 import com.solace.messaging.config.profile.ConfigurationProfile;
 import com.solace.messaging.receiver.PersistentMessageReceiver;
 import com.solace.messaging.resources.Queue;
+import com.solace.samples.java.perf.LatencyReporter;
 
 /**
  * A sample application showing non-blocking Receiver for Guaranteed messages.
@@ -106,9 +107,13 @@ public class GuaranteedReceiver {
         	
         }
 
+        final LatencyReporter latency = LatencyReporter.createIfEnabled(SAMPLE_NAME);  // -Dlatency=true
         // asynchronous anonymous receiver message callback
         receiver.receiveAsync(message -> {
         	msgRecvCounter++;
+            if (latency != null) {
+                latency.record(message.getPayloadAsBytes());
+            }
         	if (message.isRedelivered()) {  // useful check
                 // this is the broker telling the consumer that this message has been sent and not ACKed before.
                 // this can happen if an exception is thrown, or the broker restarts, or the network disconnects
@@ -127,6 +132,9 @@ public class GuaranteedReceiver {
             Thread.sleep(1000);  // wait 1 second
             System.out.printf("%s %s Received msgs/s: %,d%n",API,SAMPLE_NAME,msgRecvCounter);  // simple way of calculating message rates
             msgRecvCounter = 0;
+            if (latency != null) {
+                latency.printInterval();
+            }
             if (hasDetectedRedelivery) {
                 System.out.println("*** Redelivery detected ***");
                 hasDetectedRedelivery = false;  // only show the error once per second
@@ -135,6 +143,9 @@ public class GuaranteedReceiver {
         isShutdown = true;
         receiver.terminate(1500L);
         Thread.sleep(1000);
+        if (latency != null) {
+            latency.writePercentileFile();
+        }
         messagingService.disconnect();
         System.out.println("Main thread quitting.");
     }
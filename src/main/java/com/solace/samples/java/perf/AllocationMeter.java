@@ -0,0 +1,61 @@
+package com.solace.samples.java.perf;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures heap bytes allocated by the current thread, using HotSpot's per-thread allocation
+ * counter (<code>com.sun.management.ThreadMXBean</code>). Cheap enough to read once at the start
+ * and end of a run, e.g. to compare bytes allocated per message between two code paths. On JVMs
+ * without the counter, {@link #isSupported()} is false and all readings are 0.
+ */
+public class AllocationMeter {
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN = threadBean();
+
+    private final long threadId = Thread.currentThread().getId();
+    private final String threadName = Thread.currentThread().getName();
+    private final long startBytes;
+
+    /** Starts measuring on the calling thread. */
+    public AllocationMeter() {
+        this.startBytes = allocatedBytes();
+    }
+
+    public static boolean isSupported() {
+        return THREAD_BEAN != null;
+    }
+
+    /** Bytes allocated by the measured thread since this meter was created. */
+    public long getAllocatedBytes() {
+        return allocatedBytes() - startBytes;
+    }
+
+    /** Average bytes allocated per operation, e.g. per published message. */
+    public double getBytesPerOp(long ops) {
+        return ops == 0 ? 0 : (double) getAllocatedBytes() / ops;
+    }
+
+    public String report(long ops, String opName) {
+        if (!isSupported()) {
+            return "allocation counter not available on this JVM";
+        }
+        return String.format("%,d bytes allocated on thread '%s', %,.1f bytes/%s",
+                getAllocatedBytes(), threadName, getBytesPerOp(ops), opName);
+    }
+
+    private long allocatedBytes() {
+        return THREAD_BEAN == null ? 0 : THREAD_BEAN.getThreadAllocatedBytes(threadId);
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+        return null;
+    }
+}
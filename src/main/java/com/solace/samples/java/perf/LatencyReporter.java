@@ -0,0 +1,103 @@
+package com.solace.samples.java.perf;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receiver side of latency mode: records the one-way latency of each {@link LatencyStamp}ed
+ * payload, prints percentiles for the last interval when asked (the samples ask once a second),
+ * and writes the full distribution of the whole run to an <code>.hgrm</code> file at the end.
+ * <p>
+ * Latencies go into an HdrHistogram {@link Recorder}, which any number of threads can record
+ * into without locking or allocating. Each {@link #printInterval()} swaps out the values recorded
+ * since the previous one as a whole, so the figures of an interval always agree with each other,
+ * and adds them to the run's total.
+ * <p>
+ * {@link #record(byte[])} may be called from any thread, and so may the printing methods, which
+ * take turns.
+ */
+public final class LatencyReporter {
+
+    private static final long HIGHEST_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final String name;
+    private final Recorder recorder = new Recorder(HIGHEST_NANOS, 3);
+    private final Histogram total = new Histogram(HIGHEST_NANOS, 3);
+    private final LongAdder unstamped = new LongAdder();
+    private final LongAdder negative = new LongAdder();
+    private Histogram recycled;  // handed back to the recorder for reuse
+
+    /**
+     * @param name used in the percentile file name
+     */
+    public LatencyReporter(String name) {
+        this.name = name;
+    }
+
+    /** A reporter if latency mode is on (<code>-Dlatency=true</code>), otherwise null. */
+    public static LatencyReporter createIfEnabled(String name) {
+        return LatencyStamp.isEnabled() ? new LatencyReporter(name) : null;
+    }
+
+    /** Records the latency of a received payload, if it carries a stamp. */
+    public void record(byte[] payload) {
+        if (!LatencyStamp.isStamped(payload)) {
+            unstamped.increment();
+            return;
+        }
+        recordLatency(LatencyStamp.nowNanos() - LatencyStamp.sendNanos(payload));
+    }
+
+    /** Records a latency measured elsewhere, in nanoseconds. */
+    public void recordLatency(long latencyNanos) {
+        if (latencyNanos < 0) {
+            negative.increment();  // the clocks disagree by more than the latency
+        }
+        recorder.recordValue(Math.min(Math.max(latencyNanos, 0), HIGHEST_NANOS));
+    }
+
+    /** Takes the values recorded since the previous call and adds them to the total. */
+    private Histogram takeInterval() {
+        recycled = recorder.getIntervalHistogram(recycled);
+        total.add(recycled);
+        return recycled;
+    }
+
+    /** Prints p50/p99/p99.9/max of the latencies recorded since the previous call. */
+    public synchronized void printInterval() {
+        Histogram interval = takeInterval();
+        if (interval.getTotalCount() == 0) {
+            return;
+        }
+        System.out.printf("Latency us: p50 %,.1f | p99 %,.1f | p99.9 %,.1f | max %,.1f (%,d msgs)%n",
+                interval.getValueAtPercentile(50) / 1e3, interval.getValueAtPercentile(99) / 1e3,
+                interval.getValueAtPercentile(99.9) / 1e3, interval.getMaxValue() / 1e3, interval.getTotalCount());
+    }
+
+    /**
+     * Writes the whole run's percentile distribution, in microseconds, to
+     * <code>-Dlatency.file</code> (default <code>&lt;name&gt;-latency.hgrm</code>).
+     */
+    public synchronized void writePercentileFile() {
+        String file = System.getProperty("latency.file", name + "-latency.hgrm");
+        takeInterval();  // anything recorded since the last print
+        try (PrintStream out = new PrintStream(file)) {
+            total.outputPercentileDistribution(out, 5, 1e3);
+        } catch (FileNotFoundException e) {
+            System.out.println("### Could not write latency percentiles to " + file + ": " + e.getMessage());
+            return;
+        }
+        System.out.printf("Latency over %,d msgs: p50 %,.1f us, p99.9 %,.1f us, max %,.1f us; percentiles written to %s%n",
+                total.getTotalCount(), total.getValueAtPercentile(50) / 1e3, total.getValueAtPercentile(99.9) / 1e3,
+                total.getMaxValue() / 1e3, file);
+        if (unstamped.sum() > 0 || negative.sum() > 0) {
+            System.out.printf("Latency: %,d msgs without a stamp, %,d with a send time in the future (check clock sync)%n",
+                    unstamped.sum(), negative.sum());
+        }
+    }
+}
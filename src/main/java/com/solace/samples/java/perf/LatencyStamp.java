@@ -0,0 +1,95 @@
+package com.solace.samples.java.perf;
+
+import java.time.Instant;
+
+/**
+ * Latency mode's payload prefix: a 4-byte marker, an 8-byte sequence number and the 8-byte send
+ * time, big-endian, written over the start of the payload by a publisher and read back by a
+ * receiver. Enable it with <code>-Dlatency=true</code> on both sides.
+ * <p>
+ * Send times come from {@link #nowNanos()}, nanoseconds since the epoch on a clock that is
+ * read from the wall clock once per JVM and then advanced by <code>System.nanoTime()</code>, so
+ * it is as precise as <code>nanoTime</code> and does not jump when NTP adjusts the wall clock.
+ * One-way latencies between two JVMs are therefore only as good as their wall clocks agreed at
+ * startup: sub-millisecond on one host, and as good as NTP/PTP between hosts.
+ */
+public final class LatencyStamp {
+
+    /** Bytes of payload the stamp overwrites. */
+    public static final int LENGTH = 20;
+
+    private static final int MARKER = 0x4C415431;  // "LAT1"
+    private static final long EPOCH_NANOS_AT_ORIGIN;
+    private static final long ORIGIN_NANO_TIME;
+
+    static {
+        Instant now = Instant.now();
+        ORIGIN_NANO_TIME = System.nanoTime();
+        EPOCH_NANOS_AT_ORIGIN = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    private LatencyStamp() {
+    }
+
+    /** Whether latency mode is on (<code>-Dlatency=true</code>). */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("latency");
+    }
+
+    /** Nanoseconds since the epoch, with <code>System.nanoTime()</code> precision. */
+    public static long nowNanos() {
+        return EPOCH_NANOS_AT_ORIGIN + (System.nanoTime() - ORIGIN_NANO_TIME);
+    }
+
+    /** Converts a <code>System.nanoTime()</code> reading, e.g. an intended send time, to {@link #nowNanos()}'s clock. */
+    public static long toEpochNanos(long nanoTime) {
+        return EPOCH_NANOS_AT_ORIGIN + (nanoTime - ORIGIN_NANO_TIME);
+    }
+
+    /** Stamps the payload with the sequence number and the current time. */
+    public static void stamp(byte[] payload, long sequence) {
+        stamp(payload, sequence, nowNanos());
+    }
+
+    /** Stamps the payload with the sequence number and the given send time from {@link #nowNanos()}. */
+    public static void stamp(byte[] payload, long sequence, long sendNanos) {
+        if (payload.length < LENGTH) {
+            throw new IllegalArgumentException("Payload too small for a latency stamp: " + payload.length + " < " + LENGTH);
+        }
+        writeInt(payload, 0, MARKER);
+        writeLong(payload, 4, sequence);
+        writeLong(payload, 12, sendNanos);
+    }
+
+    public static boolean isStamped(byte[] payload) {
+        return payload != null && payload.length >= LENGTH && readInt(payload, 0) == MARKER;
+    }
+
+    public static long sequence(byte[] payload) {
+        return readLong(payload, 4);
+    }
+
+    public static long sendNanos(byte[] payload) {
+        return readLong(payload, 12);
+    }
+
+    private static void writeInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+
+    private static void writeLong(byte[] b, int offset, long value) {
+        writeInt(b, offset, (int) (value >>> 32));
+        writeInt(b, offset + 4, (int) value);
+    }
+
+    private static int readInt(byte[] b, int offset) {
+        return (b[offset] & 0xFF) << 24 | (b[offset + 1] & 0xFF) << 16 | (b[offset + 2] & 0xFF) << 8 | (b[offset + 3] & 0xFF);
+    }
+
+    private static long readLong(byte[] b, int offset) {
+        return (long) readInt(b, offset) << 32 | (readInt(b, offset + 4) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,71 @@
+package com.solace.samples.java.perf;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Latency mode without a broker: a publisher thread stamps payloads exactly as the latency-mode
+ * publishers do and hands a copy of each to a receiver thread through a bounded queue, which
+ * stands in for the broker. The receiver records them with the same {@link LatencyReporter}
+ * the receivers use. Shows the measurement floor of this JVM and machine, and checks the
+ * stamping and reporting path end to end.
+ * <pre>
+ *   LoopbackLatency [rate msg/s, 0 for max (default 10000)] [seconds (default 10)] [payload bytes (default 100)]
+ * </pre>
+ */
+public class LoopbackLatency {
+
+    private static final byte[] POISON = new byte[0];
+
+    public static void main(String... args) throws InterruptedException {
+        double rate = args.length > 0 ? Double.parseDouble(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int payloadSize = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        BlockingQueue<byte[]> broker = new ArrayBlockingQueue<>(8192);
+        LatencyReporter latency = new LatencyReporter(LoopbackLatency.class.getSimpleName());
+
+        Thread receiver = new Thread(() -> {
+            try {
+                byte[] payload;
+                while ((payload = broker.take()) != POISON) {
+                    latency.record(payload);
+                }
+            } catch (InterruptedException e) {
+                // shutting down
+            }
+        }, "loopback-receiver");
+        receiver.start();
+
+        Thread publisher = new Thread(() -> {
+            byte[] payload = new byte[payloadSize];  // preallocate memory, for reuse, for performance
+            Arrays.fill(payload, (byte) 'A');
+            RateLimiter rateLimiter = new RateLimiter(rate);
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            long sequence = 0;
+            try {
+                while (System.nanoTime() < deadline) {
+                    rateLimiter.acquire();
+                    LatencyStamp.stamp(payload, sequence++);
+                    broker.put(payload.clone());  // the broker hop: the receiver gets its own copy
+                }
+                broker.put(POISON);
+            } catch (InterruptedException e) {
+                // shutting down
+            }
+            System.out.println("Publish rate: " + rateLimiter);
+        }, "loopback-publisher");
+        System.out.printf("Loopback latency test: %s msg/s for %d s, %d-byte payloads%n",
+                rate == 0 ? "max" : String.format("%,.0f", rate), seconds, payloadSize);
+        publisher.start();
+
+        while (publisher.isAlive()) {
+            publisher.join(1000);
+            latency.printInterval();
+        }
+        receiver.join();
+        latency.printInterval();
+        latency.writePercentileFile();
+    }
+}
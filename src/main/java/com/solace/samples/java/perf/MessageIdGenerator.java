@@ -0,0 +1,192 @@
+package com.solace.samples.java.perf;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cheap message ids for hot publish paths, as a replacement for
+ * <code>UUID.randomUUID().toString()</code>, which goes through <code>SecureRandom</code> and
+ * several intermediate objects per call. Each strategy formats its id into a reusable per-thread
+ * <code>char[]</code>, so the only allocation per id is the final String handed to
+ * <code>withProperty(...)</code>. All strategies are thread-safe.
+ * <ul>
+ *   <li><b>counter</b>: <code>&lt;node&gt;-&lt;thread&gt;-&lt;seq&gt;</code>, a per-thread counter behind a
+ *       node prefix; the cheapest, unique per node as long as the node prefix is</li>
+ *   <li><b>snowflake</b>: 16 hex digits of a 64-bit time-ordered id (41 bits milliseconds,
+ *       10 bits node, 12 bits sequence); ids sort by creation time. A numeric node (0 to 1023)
+ *       is used as-is; any other node name is hashed into the 10 bits, so two different names
+ *       can end up with the same node id and produce duplicate ids. Give each publisher its own
+ *       number where uniqueness across processes matters.</li>
+ *   <li><b>uuid</b>: a random version 4 UUID in the usual 36-char form, for consumers that expect
+ *       one; uses <code>ThreadLocalRandom</code>, so not suitable where ids must be unguessable</li>
+ * </ul>
+ */
+public abstract class MessageIdGenerator {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int MAX_NODE_LENGTH = 64;
+    /** Longest id any strategy writes: a counter id with a maximal node prefix. */
+    public static final int MAX_ID_LENGTH = MAX_NODE_LENGTH + 1 + 10 + 1 + 19;
+    private static final ThreadLocal<char[]> BUFFERS = ThreadLocal.withInitial(() -> new char[MAX_ID_LENGTH]);
+
+    /**
+     * Writes the next id into <code>dst</code>, starting at index 0. <code>dst</code> must hold
+     * at least {@link #MAX_ID_LENGTH} chars.
+     *
+     * @return the number of chars written
+     */
+    public abstract int nextId(char[] dst);
+
+    /** Next id as a String, formatted in this thread's reusable buffer. */
+    public String nextId() {
+        char[] buf = BUFFERS.get();
+        return new String(buf, 0, nextId(buf));
+    }
+
+    /**
+     * @param strategy <code>counter</code>, <code>snowflake</code> or <code>uuid</code>
+     * @param node     node prefix / id source, or null to derive one from the process name
+     */
+    public static MessageIdGenerator create(String strategy, String node) {
+        String nodeName = node != null ? node : defaultNodeName();
+        switch (strategy) {
+            case "counter":
+                return new CounterIdGenerator(nodeName);
+            case "snowflake":
+                return new SnowflakeIdGenerator(snowflakeNode(nodeName));
+            case "uuid":
+                return new RandomUuidGenerator();
+            default:
+                throw new IllegalArgumentException("Unknown message id strategy: " + strategy);
+        }
+    }
+
+    public static MessageIdGenerator create(String strategy) {
+        return create(strategy, null);
+    }
+
+    /**
+     * The 10-bit snowflake node: a number is taken as-is and range-checked, a name is hashed and
+     * the resulting id printed, so nodes that collide can be spotted.
+     */
+    private static int snowflakeNode(String nodeName) {
+        if (nodeName.matches("\\d+")) {
+            int node = nodeName.length() <= 4 ? Integer.parseInt(nodeName) : Integer.MAX_VALUE;
+            if (node > SnowflakeIdGenerator.MAX_NODE) {
+                throw new IllegalArgumentException("Snowflake node id must be 0 to " + SnowflakeIdGenerator.MAX_NODE + ": " + nodeName);
+            }
+            return node;
+        }
+        int node = nodeName.hashCode() & SnowflakeIdGenerator.MAX_NODE;
+        System.out.printf("Snowflake node id %d derived from '%s'; names can collide, pass a number to choose it%n",
+                node, nodeName);
+        return node;
+    }
+
+    /** "pid@host" from the runtime, trimmed to characters that are safe in an id. */
+    private static String defaultNodeName() {
+        String name = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^A-Za-z0-9@._-]", "");
+        return name.length() > 32 ? name.substring(0, 32) : name;
+    }
+
+    /** Writes non-negative <code>value</code> in decimal at <code>offset</code>; returns the index just past it. */
+    static int writeDecimal(char[] dst, int offset, long value) {
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        int end = offset + digits;
+        int p = end;
+        do {
+            dst[--p] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        return end;
+    }
+
+    static void writeHex(char[] dst, int offset, long value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            dst[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static final class CounterIdGenerator extends MessageIdGenerator {
+        private final char[] nodePrefix;
+        private final AtomicInteger threadIndexes = new AtomicInteger();
+        private final ThreadLocal<long[]> counters;  // {thread index, next seq}
+
+        private CounterIdGenerator(String node) {
+            if (node.length() > MAX_NODE_LENGTH) {
+                throw new IllegalArgumentException("Node prefix longer than " + MAX_NODE_LENGTH + " chars: " + node);
+            }
+            this.nodePrefix = (node + '-').toCharArray();
+            this.counters = ThreadLocal.withInitial(() -> new long[]{threadIndexes.getAndIncrement(), 0});
+        }
+
+        @Override
+        public int nextId(char[] dst) {
+            long[] state = counters.get();
+            System.arraycopy(nodePrefix, 0, dst, 0, nodePrefix.length);
+            int p = writeDecimal(dst, nodePrefix.length, state[0]);
+            dst[p++] = '-';
+            return writeDecimal(dst, p, state[1]++);
+        }
+    }
+
+    private static final class SnowflakeIdGenerator extends MessageIdGenerator {
+        private static final long EPOCH_MS = 1_704_067_200_000L;  // 2024-01-01T00:00:00Z
+        private static final int SEQUENCE_BITS = 12;
+        private static final int NODE_BITS = 10;
+        private static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+        private final long node;
+        // (milliseconds << SEQUENCE_BITS) | sequence of the last id handed out
+        private final AtomicLong lastState = new AtomicLong();
+
+        private SnowflakeIdGenerator(int node) {
+            this.node = node;
+        }
+
+        @Override
+        public int nextId(char[] dst) {
+            long now = (System.currentTimeMillis() - EPOCH_MS) << SEQUENCE_BITS;
+            long prev;
+            long next;
+            do {
+                prev = lastState.get();
+                // a new millisecond restarts the sequence; within the same one (or if the clock
+                // went backwards) keep counting, borrowing from the next millisecond on overflow
+                next = now > prev ? now : prev + 1;
+            } while (!lastState.compareAndSet(prev, next));
+            long millis = next >>> SEQUENCE_BITS;
+            long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+            long id = (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+            writeHex(dst, 0, id, 16);
+            return 16;
+        }
+    }
+
+    private static final class RandomUuidGenerator extends MessageIdGenerator {
+        @Override
+        public int nextId(char[] dst) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long msb = (random.nextLong() & ~0xF000L) | 0x4000L;                          // version 4
+            long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;  // IETF variant
+            writeHex(dst, 0, msb >>> 32, 8);
+            dst[8] = '-';
+            writeHex(dst, 9, msb >>> 16, 4);
+            dst[13] = '-';
+            writeHex(dst, 14, msb, 4);
+            dst[18] = '-';
+            writeHex(dst, 19, lsb >>> 48, 4);
+            dst[23] = '-';
+            writeHex(dst, 24, lsb, 12);
+            return 36;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.solace.samples.java.perf;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Gathers items from one producer thread, e.g. a receiver's dispatch thread, into micro-batches
+ * and hands each batch to a handler on the batcher's own thread. A batch closes when it holds
+ * <code>maxBatch</code> items or when <code>linger</code> has passed since its first item,
+ * whichever comes first. With a linger of 0 a batch is simply whatever was queued.
+ * <p>
+ * Batching trades latency for throughput: per-batch costs such as a lookup or a publish burst
+ * are paid once per batch, but an item may wait up to the linger time for its batch to close.
+ * Both sides are measured: batch sizes, and each item's <b>added latency</b> from
+ * {@link #offer} until the handler returned for its batch, which includes queueing behind
+ * earlier batches.
+ * <p>
+ * Added latency goes into an HdrHistogram {@link SingleWriterRecorder} on the batcher thread, and
+ * the reporting methods, which may be called from any other thread, swap out what it recorded.
+ * <p>
+ * Items pass through an {@link SpscRingBuffer}. When it is full, {@link #offer} waits, pushing
+ * back on the producer.
+ *
+ * @param <E> item type
+ */
+public final class MicroBatcher<E> implements AutoCloseable {
+
+    private static final long PARK_NANOS = 50_000;
+    private static final long HIGHEST_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final Consumer<List<E>> handler;
+    private final SpscRingBuffer<E> queue;
+    // enqueue times, in offer order; twice the queue's size, so the producer, which is at most
+    // one queue ahead, never overwrites a time the consumer has yet to read
+    private final long[] enqueueNanos;
+    private final int stampMask;
+    private long offered;  // producer only
+    private long taken;    // batcher only
+    private final ArrayList<E> batch;
+    private final long[] batchEnqueueNanos;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final SingleWriterRecorder latencyRecorder = new SingleWriterRecorder(HIGHEST_NANOS, 3);
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder items = new LongAdder();
+    private final LongAdder fullWaits = new LongAdder();
+    // reporting side
+    private final Histogram addedLatency = new Histogram(HIGHEST_NANOS, 3);
+    private Histogram latencyInterval;  // handed back to the recorder for reuse
+    private long lastBatches;
+    private long lastItems;
+
+    /**
+     * @param name          batcher thread name
+     * @param maxBatch      most items per batch
+     * @param lingerNanos   longest a batch waits for more items after its first
+     * @param queueCapacity items that can wait for the batcher, rounded up to a power of two
+     * @param handler       called on the batcher thread with each batch; the list is reused, so copy
+     *                      anything needed afterwards
+     */
+    public MicroBatcher(String name, int maxBatch, long lingerNanos, int queueCapacity, Consumer<List<E>> handler) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + maxBatch);
+        }
+        if (lingerNanos < 0) {
+            throw new IllegalArgumentException("Linger time must not be negative: " + lingerNanos);
+        }
+        this.maxBatch = maxBatch;
+        this.lingerNanos = lingerNanos;
+        this.handler = handler;
+        this.queue = new SpscRingBuffer<>(queueCapacity);
+        this.enqueueNanos = new long[queue.capacity() * 2];
+        this.stampMask = enqueueNanos.length - 1;
+        this.batch = new ArrayList<>(maxBatch);
+        this.batchEnqueueNanos = new long[maxBatch];
+        this.thread = new Thread(this::run, name + "-batcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Queues an item, waiting while the queue is full. Call from the single producer thread only. */
+    public void offer(E item) {
+        enqueueNanos[(int) offered & stampMask] = System.nanoTime();  // published by the offer below
+        if (!queue.offer(item)) {
+            fullWaits.increment();
+            while (!queue.offer(item)) {
+                Thread.yield();
+            }
+        }
+        offered++;
+    }
+
+    private E take() {
+        E item = queue.poll();
+        if (item != null) {
+            batchEnqueueNanos[batch.size()] = enqueueNanos[(int) taken++ & stampMask];
+            batch.add(item);
+        }
+        return item;
+    }
+
+    private void run() {
+        int idle = 0;
+        while (true) {
+            if (take() == null) {
+                if (!running && queue.size() == 0) {
+                    return;
+                }
+                if (++idle > 100) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                } else {
+                    Thread.yield();
+                }
+                continue;
+            }
+            idle = 0;
+            final long deadline = System.nanoTime() + lingerNanos;
+            while (batch.size() < maxBatch) {
+                if (take() == null) {
+                    if (lingerNanos == 0 || !running || System.nanoTime() - deadline >= 0) {
+                        break;
+                    }
+                    Thread.yield();
+                }
+            }
+            flush();
+        }
+    }
+
+    private void flush() {
+        try {
+            handler.accept(batch);
+        } catch (RuntimeException e) {  // keep batching
+            System.out.printf("### %s caught while handling a batch: %s%n", thread.getName(), e);
+        }
+        final long done = System.nanoTime();
+        final int size = batch.size();
+        for (int i = 0; i < size; i++) {
+            latencyRecorder.recordValue(Math.min(done - batchEnqueueNanos[i], HIGHEST_NANOS));
+        }
+        batch.clear();
+        batches.increment();
+        items.add(size);
+    }
+
+    /**
+     * Handles everything already queued, then stops the batcher thread. If the calling thread is
+     * interrupted, returns without waiting for the batcher, with the interrupt flag set again.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();  // let the caller see it; queued items may be lost
+        }
+    }
+
+    /** Adds the latencies recorded since the previous call to the total and returns them. */
+    private Histogram takeInterval() {
+        latencyInterval = latencyRecorder.getIntervalHistogram(latencyInterval);
+        addedLatency.add(latencyInterval);
+        return latencyInterval;
+    }
+
+    /** Prints items, batches and added latency since the previous call. */
+    public synchronized void printInterval() {
+        final Histogram interval = takeInterval();
+        final long b = batches.sum();
+        final long n = items.sum();
+        System.out.printf("Batching: %,d msgs in %,d batches (avg %.1f, max %d) | queued %,d"
+                        + " | added latency us: p50 %,.1f | p99 %,.1f | max %,.1f%n",
+                n - lastItems, b - lastBatches, b == lastBatches ? 0 : (n - lastItems) / (double) (b - lastBatches),
+                maxBatch, queue.size(), interval.getValueAtPercentile(50) / 1e3,
+                interval.getValueAtPercentile(99) / 1e3, interval.getMaxValue() / 1e3);
+        lastBatches = b;
+        lastItems = n;
+    }
+
+    /** The whole run: batch sizes, full-queue waits and the added latency distribution. */
+    @Override
+    public synchronized String toString() {
+        takeInterval();
+        final Histogram latency = addedLatency;
+        final long b = batches.sum();
+        final long n = items.sum();
+        return String.format("max batch %d, linger %,.1f us: %,d msgs in %,d batches (avg %.1f), %,d full-queue waits%n"
+                        + "  added latency us: p50 %,.1f | p99 %,.1f | p99.9 %,.1f | max %,.1f | mean %,.1f",
+                maxBatch, lingerNanos / 1e3, n, b, b == 0 ? 0 : n / (double) b, fullWaits.sum(),
+                latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(99) / 1e3,
+                latency.getValueAtPercentile(99.9) / 1e3, latency.getMaxValue() / 1e3, latency.getMean() / 1e3);
+    }
+}
@@ -0,0 +1,170 @@
+package com.solace.samples.java.perf;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open-loop pacing for a publish loop, with latency measured the way callers would see it.
+ * <p>
+ * Message <i>i</i> is due at <code>start + i / rate</code>, whatever happened to message
+ * <i>i-1</i>. {@link RateLimiter} forgets missed slots after a stall, and that hides the stall
+ * (coordinated omission). This pacer never forgets a slot: if a publish blocks, e.g. in
+ * <code>onBackPressureWait</code>, the messages due in the meantime go out back-to-back
+ * afterwards. Each one is charged the time it spent waiting for its turn.
+ * <p>
+ * Two times are recorded for every message:
+ * <ul>
+ *   <li><b>response time</b>: from the intended send time until <code>publish()</code>
+ *       returned. This is what a caller producing at the target rate would experience.</li>
+ *   <li><b>service time</b>: how long the <code>publish()</code> call itself took. Calls
+ *       slower than the stall threshold count as back-pressure stalls.</li>
+ * </ul>
+ * <pre>
+ *   long intended = pacer.awaitNext();
+ *   long start = System.nanoTime();
+ *   publisher.publish(message, topic);
+ *   pacer.sent(intended, start);
+ * </pre>
+ * Both go into HdrHistogram {@link SingleWriterRecorder}s, so recording neither locks nor
+ * allocates, and each report swaps out everything recorded since the previous one at once.
+ * <p>
+ * Call the pacing methods from one publishing thread. The reporting methods may be called from
+ * any other.
+ */
+public final class OpenLoopPacer {
+
+    private static final long HIGHEST_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final double targetRate;
+    private final long intervalNanos;
+    private final long stallThresholdNanos;
+    private final SingleWriterRecorder responseRecorder = new SingleWriterRecorder(HIGHEST_NANOS, 3);
+    private final SingleWriterRecorder serviceRecorder = new SingleWriterRecorder(HIGHEST_NANOS, 3);
+    private final LongAdder stalls = new LongAdder();
+    private final LongAdder stalledNanos = new LongAdder();
+    private volatile long longestStallNanos;
+    private volatile long lagNanos;  // how far behind schedule the last message went out
+
+    private boolean started;
+    private long startNanos;
+    private long nextIntendedNanos;
+
+    // reporting side
+    private final Histogram responseTimes = new Histogram(HIGHEST_NANOS, 3);
+    private final Histogram serviceTimes = new Histogram(HIGHEST_NANOS, 3);
+    private Histogram responseInterval;  // handed back to the recorders for reuse
+    private Histogram serviceInterval;
+    private long lastStalls;
+    private long lastStalledNanos;
+
+    /**
+     * @param ratePerSec          target rate in msg/s, must be &gt; 0
+     * @param stallThresholdNanos publish calls taking longer than this count as stalls
+     */
+    public OpenLoopPacer(double ratePerSec, long stallThresholdNanos) {
+        if (ratePerSec <= 0) {
+            throw new IllegalArgumentException("Open-loop pacing needs a target rate > 0: " + ratePerSec);
+        }
+        this.targetRate = ratePerSec;
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000d / ratePerSec));
+        this.stallThresholdNanos = stallThresholdNanos;
+    }
+
+    /**
+     * Blocks until the next message is due, or returns at once if it is already overdue.
+     *
+     * @return the intended send time of the message, on the <code>System.nanoTime()</code> clock
+     * @throws InterruptedException if interrupted while waiting; that message's slot is skipped
+     */
+    public long awaitNext() throws InterruptedException {
+        if (!started) {
+            started = true;
+            startNanos = System.nanoTime();
+            nextIntendedNanos = startNanos;
+        }
+        long intended = nextIntendedNanos;
+        nextIntendedNanos += intervalNanos;
+        RateLimiter.waitUntil(intended);
+        return intended;
+    }
+
+    /**
+     * Records a message as sent.
+     *
+     * @param intendedNanos     from {@link #awaitNext()}
+     * @param publishStartNanos <code>System.nanoTime()</code> just before the publish call
+     */
+    public void sent(long intendedNanos, long publishStartNanos) {
+        long now = System.nanoTime();
+        long serviceTime = now - publishStartNanos;
+        responseRecorder.recordValue(Math.min(now - intendedNanos, HIGHEST_NANOS));
+        serviceRecorder.recordValue(Math.min(serviceTime, HIGHEST_NANOS));
+        if (serviceTime > stallThresholdNanos) {
+            stalls.increment();
+            stalledNanos.add(serviceTime);
+            if (serviceTime > longestStallNanos) {
+                longestStallNanos = serviceTime;
+            }
+        }
+        lagNanos = publishStartNanos - intendedNanos;
+    }
+
+    /** Adds the times recorded since the previous call to the totals; returns the response times. */
+    private Histogram takeIntervals() {
+        responseInterval = responseRecorder.getIntervalHistogram(responseInterval);
+        serviceInterval = serviceRecorder.getIntervalHistogram(serviceInterval);
+        responseTimes.add(responseInterval);
+        serviceTimes.add(serviceInterval);
+        return responseInterval;
+    }
+
+    /** Prints response-time percentiles and stalls since the previous call. */
+    public synchronized void printInterval() {
+        Histogram interval = takeIntervals();
+        long stallCount = stalls.sum();
+        long stallTime = stalledNanos.sum();
+        System.out.printf("Open loop response us: p50 %,.1f | p99 %,.1f | p99.9 %,.1f | max %,.1f | lag %,.1f ms"
+                        + " | stalls %,d for %,.1f ms%n",
+                interval.getValueAtPercentile(50) / 1e3, interval.getValueAtPercentile(99) / 1e3,
+                interval.getValueAtPercentile(99.9) / 1e3, interval.getMaxValue() / 1e3, lagNanos / 1e6,
+                stallCount - lastStalls, (stallTime - lastStalledNanos) / 1e6);
+        lastStalls = stallCount;
+        lastStalledNanos = stallTime;
+    }
+
+    /** The whole run: rates, response times against service times, and stalls. */
+    @Override
+    public synchronized String toString() {
+        takeIntervals();
+        Histogram response = responseTimes;
+        Histogram service = serviceTimes;
+        long count = response.getTotalCount();
+        double elapsed = count == 0 ? 0 : (System.nanoTime() - startNanos) / 1e9;
+        return String.format("open loop, %,d msgs at %,.1f msg/s (target %,.1f msg/s)%n"
+                        + "  response time (from intended send) us: p50 %,.1f | p99 %,.1f | p99.9 %,.1f | max %,.1f%n"
+                        + "  service time (publish call) us:        p50 %,.1f | p99 %,.1f | p99.9 %,.1f | max %,.1f%n"
+                        + "  back-pressure stalls > %,.1f ms: %,d, %,.1f ms in total, longest %,.1f ms",
+                count, elapsed > 0 ? count / elapsed : 0, targetRate,
+                response.getValueAtPercentile(50) / 1e3, response.getValueAtPercentile(99) / 1e3,
+                response.getValueAtPercentile(99.9) / 1e3, response.getMaxValue() / 1e3,
+                service.getValueAtPercentile(50) / 1e3, service.getValueAtPercentile(99) / 1e3,
+                service.getValueAtPercentile(99.9) / 1e3, service.getMaxValue() / 1e3,
+                stallThresholdNanos / 1e6, stalls.sum(), stalledNanos.sum() / 1e6, longestStallNanos / 1e6);
+    }
+
+    /** Writes the response-time percentile distribution, in microseconds, in HdrHistogram's .hgrm format. */
+    public synchronized void writePercentileFile(String file) {
+        takeIntervals();
+        try (PrintStream out = new PrintStream(file)) {
+            responseTimes.outputPercentileDistribution(out, 5, 1e3);
+            System.out.println("Open loop response-time percentiles written to " + file);
+        } catch (FileNotFoundException e) {
+            System.out.println("### Could not write response-time percentiles to " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.solace.samples.java.perf;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * A pipeline stage that applies a transform on N worker threads, between one producer thread
+ * and one consumer thread. Every queue is a bounded {@link SpscRingBuffer}: the producer deals
+ * items round-robin onto the workers' input queues, and each worker puts its results on its own
+ * output queue.
+ * <p>
+ * In <b>ordered</b> mode the consumer takes results round-robin in the same order, so they come
+ * out in exactly the order the items went in, even though the transforms ran in parallel. A slow
+ * item holds up the results behind it. Unordered, the consumer takes whatever result is ready.
+ * <p>
+ * Every item yields exactly one result. If a transform throws or returns null, the result is made
+ * by the failure function instead, so the consumer can see and handle the failure; otherwise, in
+ * ordered mode, the missing result would hold up every result behind it forever.
+ * <p>
+ * Full queues push back: {@link #offer} waits for space, and so do workers whose output queue
+ * is full. Idle workers spin, then yield, then park for 50 us at a time.
+ *
+ * @param <I> input type
+ * @param <O> result type
+ */
+public final class ParallelStage<I, O> implements AutoCloseable {
+
+    private static final long PARK_NANOS = 50_000;
+
+    private final boolean ordered;
+    private final Worker<I, O>[] workers;
+    private long offered;  // producer only
+    private long taken;    // consumer only
+
+    /**
+     * @param name             thread name prefix
+     * @param workerCount      number of worker threads
+     * @param queueCapacity    capacity of each worker's input and output queue
+     * @param ordered          deliver results in input order
+     * @param transformFactory creates the transform for worker <code>i</code>, so each can have
+     *                         its own non-thread-safe helpers
+     * @param failureResult    makes the result for an item whose transform threw, e.g. one that
+     *                         carries the exception; must not throw or return null itself
+     */
+    @SuppressWarnings("unchecked")
+    public ParallelStage(String name, int workerCount, int queueCapacity, boolean ordered,
+                         IntFunction<Function<I, O>> transformFactory, BiFunction<I, RuntimeException, O> failureResult) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Need at least 1 worker: " + workerCount);
+        }
+        this.ordered = ordered;
+        this.workers = (Worker<I, O>[]) new Worker<?, ?>[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker<>(name + "-worker-" + i, queueCapacity, transformFactory.apply(i), failureResult);
+        }
+        for (Worker<I, O> worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /** Queues an item for the next worker, waiting while its queue is full. Producer thread only. */
+    public void offer(I item) {
+        final Worker<I, O> worker = workers[(int) (offered++ % workers.length)];
+        if (!worker.in.offer(item)) {
+            worker.inputWaits.increment();
+            while (!worker.in.offer(item)) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Takes the next result, in input order if ordered. Consumer thread only.
+     *
+     * @return the result, or null if none is ready yet
+     */
+    public O poll() {
+        if (ordered) {
+            final O result = workers[(int) (taken % workers.length)].out.poll();
+            if (result != null) {
+                taken++;
+            }
+            return result;
+        }
+        for (int i = 0; i < workers.length; i++) {
+            final O result = workers[(int) (taken++ % workers.length)].out.poll();
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /** Whether every item offered so far has been transformed and taken. Consumer thread only. */
+    public boolean isDrained() {
+        for (Worker<I, O> worker : workers) {
+            if (worker.in.size() > 0 || worker.busy || worker.out.size() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the workers once their input queues are empty. Results not yet taken stay pollable.
+     * If the calling thread is interrupted, returns without waiting for the workers, with the
+     * interrupt flag set again.
+     */
+    @Override
+    public void close() {
+        for (Worker<I, O> worker : workers) {
+            worker.running = false;
+            LockSupport.unpark(worker.thread);
+        }
+        try {
+            for (Worker<I, O> worker : workers) {
+                worker.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();  // let the caller see it; queued items may not be transformed
+        }
+    }
+
+    /** Per worker: items transformed and failed, input and output queue depths, and waits on full queues. */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(ordered ? "ordered" : "unordered");
+        for (int i = 0; i < workers.length; i++) {
+            final Worker<I, O> worker = workers[i];
+            sb.append(String.format("%n  worker %d: %,d transformed, %,d failed, in %,d / out %,d queued, %,d input waits, %,d output waits",
+                    i, worker.transformed.sum(), worker.failed.sum(), worker.in.size(), worker.out.size(),
+                    worker.inputWaits.sum(), worker.outputWaits.sum()));
+        }
+        return sb.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static final class Worker<I, O> implements Runnable {
+        private final SpscRingBuffer<I> in;
+        private final SpscRingBuffer<O> out;
+        private final Function<I, O> transform;
+        private final BiFunction<I, RuntimeException, O> failureResult;
+        private final Thread thread;
+        private final LongAdder transformed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder inputWaits = new LongAdder();
+        private final LongAdder outputWaits = new LongAdder();
+        private volatile boolean busy;  // holding an item taken off in but not yet on out
+        private volatile boolean running = true;
+
+        private Worker(String name, int queueCapacity, Function<I, O> transform,
+                       BiFunction<I, RuntimeException, O> failureResult) {
+            this.in = new SpscRingBuffer<>(queueCapacity);
+            this.out = new SpscRingBuffer<>(queueCapacity);
+            this.transform = transform;
+            this.failureResult = failureResult;
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (true) {
+                busy = true;
+                final I item = in.poll();
+                if (item == null) {
+                    busy = false;
+                    if (!running && in.size() == 0) {
+                        return;
+                    }
+                    if (++idle > 200) {
+                        LockSupport.parkNanos(PARK_NANOS);
+                    } else if (idle > 100) {
+                        Thread.yield();
+                    }
+                    continue;
+                }
+                idle = 0;
+                final O result = apply(item);
+                if (!out.offer(result)) {
+                    outputWaits.increment();
+                    while (!out.offer(result)) {
+                        Thread.yield();
+                    }
+                }
+                transformed.increment();
+                busy = false;
+            }
+        }
+
+        /** The item's result, or its failure result; never null, so ordered polling cannot get stuck. */
+        private O apply(I item) {
+            RuntimeException failure;
+            try {
+                final O result = transform.apply(item);
+                if (result != null) {
+                    return result;
+                }
+                failure = new NullPointerException("transform returned null");
+            } catch (RuntimeException e) {  // keep the worker alive
+                failure = e;
+            }
+            failed.increment();
+            return failureResult.apply(item, failure);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.solace.samples.java.perf;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token-bucket pacing for publish loops, scheduled on {@link System#nanoTime()} rather than
+ * <code>Thread.sleep(millis)</code> so rates well above 1 kHz can be held accurately.
+ * <p>
+ * Each call to {@link #acquire()} claims the next send slot. Slots are spaced
+ * <code>1e9 / rate</code> nanoseconds apart; if the caller falls behind, up to <code>burst</code>
+ * slots may be used back-to-back to catch up, after which the schedule is reset. Long waits park
+ * the thread, and only the final few microseconds before a slot are spent yielding, so an idle
+ * or slow-rate publisher does not burn a core. An interrupt while waiting ends the wait with
+ * {@link InterruptedException}, as <code>Thread.sleep</code> would.
+ * <p>
+ * Not thread-safe: give each publishing thread its own instance (with its share of the rate).
+ */
+public class RateLimiter {
+
+    /** Below this remaining wait, yield instead of parking, as park wake-up jitter is ~50us. */
+    private static final long SPIN_THRESHOLD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final double targetRate;
+    private final long intervalNanos;  // 0 means unlimited
+    private final long burstNanos;     // how far the schedule may lag behind 'now'
+
+    private long startNanos = 0;
+    private long nextSlotNanos = 0;
+    private long acquired = 0;
+
+    /**
+     * @param ratePerSec target rate in msg/s, or 0 for unlimited
+     * @param burst      max number of messages that may be sent back-to-back after a stall (min 1)
+     */
+    public RateLimiter(double ratePerSec, int burst) {
+        if (ratePerSec < 0) {
+            throw new IllegalArgumentException("Rate must be >= 0: " + ratePerSec);
+        }
+        this.targetRate = ratePerSec;
+        this.intervalNanos = ratePerSec == 0 ? 0 : Math.max(1, (long) (1_000_000_000d / ratePerSec));
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+    }
+
+    public RateLimiter(double ratePerSec) {
+        this(ratePerSec, 1);
+    }
+
+    /**
+     * Blocks until the next send slot is due.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting; the slot stays free for the next call
+     */
+    public void acquire() throws InterruptedException {
+        long now = System.nanoTime();
+        if (acquired == 0) {
+            startNanos = now;
+            nextSlotNanos = now;
+        }
+        if (intervalNanos == 0) {
+            acquired++;
+            return;
+        }
+        long earliest = now - burstNanos + intervalNanos;  // allows 'burst' slots in a row
+        if (nextSlotNanos < earliest) {
+            nextSlotNanos = earliest;  // fell too far behind, drop the missed slots
+        }
+        if (nextSlotNanos > now) {
+            waitUntil(nextSlotNanos);
+        }
+        nextSlotNanos += intervalNanos;
+        acquired++;
+    }
+
+    /** Parks, then yields for the last few microseconds, until <code>System.nanoTime()</code> reaches the deadline. */
+    static void waitUntil(long deadlineNanos) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /** Target rate in msg/s, 0 if unlimited. */
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    /** Number of slots handed out so far. */
+    public long getAcquired() {
+        return acquired;
+    }
+
+    /** Average rate actually achieved since the first {@link #acquire()}, in msg/s. */
+    public double getAchievedRate() {
+        long elapsed = System.nanoTime() - startNanos;
+        return acquired == 0 || elapsed <= 0 ? 0 : acquired * 1_000_000_000d / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("achieved %,.1f msg/s (target %s)", getAchievedRate(),
+                targetRate == 0 ? "unlimited" : String.format("%,.1f msg/s", targetRate));
+    }
+}
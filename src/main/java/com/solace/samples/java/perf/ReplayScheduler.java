@@ -0,0 +1,156 @@
+package com.solace.samples.java.perf;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces a replay by event time: each event is due at the wall-clock time its timestamp is from
+ * the first event's, divided by the speed-up factor. Waits use the same park-then-yield scheme as
+ * {@link RateLimiter}, on {@link System#nanoTime()}. A replay that falls behind does not skip or
+ * reset anything; events are released as fast as possible until it is back on schedule.
+ * <p>
+ * Drift, i.e. how late each event was released compared with its planned time, is recorded in an
+ * HdrHistogram (3 significant digits, up to 10 minutes) for the p50/p99/p99.9/max report. Events
+ * without a usable timestamp are released immediately and counted separately. An event whose
+ * timestamp goes backwards is planned for the latest planned time so far, so it is already due
+ * and its drift is measured from there rather than from its own, earlier, time.
+ * <p>
+ * Not thread-safe: call from the single thread that reads the input.
+ */
+public class ReplayScheduler {
+
+    private static final long LATE_NANOS = 1_000_000;  // 1 ms
+    private static final long HIGHEST_DRIFT_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final double speed;  // 0 means as fast as possible
+    private long firstEventMillis = Long.MIN_VALUE;
+    private long firstEventNanos;
+    private long lastEventMillis;
+    private long lastPlannedNanos;
+    private long lastReleaseNanos;
+    private long released;
+    private long untimed;
+    private long late;
+    private long maxDriftNanos;
+    private final Histogram drift = new Histogram(HIGHEST_DRIFT_NANOS, 3);
+
+    private String lastTimestamp;  // consecutive events often share a timestamp
+    private long lastTimestampMillis;
+
+    /**
+     * @param speed replay speed-up factor, e.g. 1 for real time or 10 for ten times faster; 0 for
+     *              no waiting at all
+     */
+    public ReplayScheduler(double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Speed must be >= 0: " + speed);
+        }
+        this.speed = speed;
+    }
+
+    /** Parses <code>max</code> as 0 (no waiting), anything else as a factor such as <code>10</code> or <code>10x</code>. */
+    public static ReplayScheduler forSpeed(String speed) {
+        if (speed == null || speed.equalsIgnoreCase("max")) {
+            return new ReplayScheduler(0);
+        }
+        String factor = speed.endsWith("x") || speed.endsWith("X") ? speed.substring(0, speed.length() - 1) : speed;
+        return new ReplayScheduler(Double.parseDouble(factor));
+    }
+
+    /**
+     * Epoch milliseconds of an ISO-8601 instant such as <code>2025-04-29T09:00:00Z</code> or of a
+     * plain number of epoch milliseconds; <code>Long.MIN_VALUE</code> if neither.
+     */
+    public long parseEventTime(String timestamp) {
+        if (timestamp == null) {
+            return Long.MIN_VALUE;
+        }
+        if (timestamp.equals(lastTimestamp)) {
+            return lastTimestampMillis;
+        }
+        long millis;
+        try {
+            millis = Character.isDigit(timestamp.charAt(timestamp.length() - 1)) && timestamp.indexOf('T') < 0
+                    ? Long.parseLong(timestamp)
+                    : Instant.parse(timestamp).toEpochMilli();
+        } catch (DateTimeParseException | NumberFormatException | StringIndexOutOfBoundsException e) {
+            return Long.MIN_VALUE;
+        }
+        lastTimestamp = timestamp;
+        lastTimestampMillis = millis;
+        return millis;
+    }
+
+    /**
+     * Blocks until the event with this timestamp is due.
+     *
+     * @param eventMillis event time in epoch milliseconds, or <code>Long.MIN_VALUE</code> if unknown
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void await(long eventMillis) throws InterruptedException {
+        long now = System.nanoTime();
+        if (eventMillis == Long.MIN_VALUE) {
+            untimed++;
+            release(now, now);
+            return;
+        }
+        if (firstEventMillis == Long.MIN_VALUE) {
+            firstEventMillis = eventMillis;
+            firstEventNanos = now;
+            lastPlannedNanos = now;
+        }
+        lastEventMillis = Math.max(lastEventMillis, eventMillis);
+        long plannedNanos = speed == 0 ? now
+                : firstEventNanos + (long) ((eventMillis - firstEventMillis) * 1_000_000d / speed);
+        if (plannedNanos - lastPlannedNanos < 0) {  // out of order: due with the latest so far
+            plannedNanos = lastPlannedNanos;
+        }
+        lastPlannedNanos = plannedNanos;
+        if (plannedNanos > now) {
+            RateLimiter.waitUntil(plannedNanos);
+            now = System.nanoTime();
+        }
+        release(plannedNanos, now);
+    }
+
+    private void release(long plannedNanos, long actualNanos) {
+        long driftNanos = Math.max(0, actualNanos - plannedNanos);
+        if (driftNanos > maxDriftNanos) {
+            maxDriftNanos = driftNanos;
+        }
+        if (driftNanos > LATE_NANOS) {
+            late++;
+        }
+        drift.recordValue(Math.min(driftNanos, HIGHEST_DRIFT_NANOS));
+        lastReleaseNanos = actualNanos;
+        released++;
+    }
+
+    public long getReleased() {
+        return released;
+    }
+
+    public long getMaxDriftNanos() {
+        return maxDriftNanos;
+    }
+
+    /** Drift at the given percentile (e.g. 99.9), in nanoseconds, to 3 significant digits. */
+    public long getDriftPercentileNanos(double percentile) {
+        return drift.getValueAtPercentile(percentile);
+    }
+
+    @Override
+    public String toString() {
+        double wallSeconds = released == 0 ? 0 : (lastReleaseNanos - firstEventNanos) / 1e9;
+        double eventSeconds = firstEventMillis == Long.MIN_VALUE ? 0 : (lastEventMillis - firstEventMillis) / 1e3;
+        return String.format("%,d events at %s: %,.1f s of event time in %,.1f s (%,.1fx); "
+                        + "drift p50 %,.1f us, p99 %,.1f us, p99.9 %,.1f us, max %,.3f ms; %,d late by >1 ms, %,d without timestamp",
+                released, speed == 0 ? "max speed" : speed + "x", eventSeconds, wallSeconds,
+                wallSeconds > 0 ? eventSeconds / wallSeconds : 0,
+                getDriftPercentileNanos(50) / 1e3, getDriftPercentileNanos(99) / 1e3, getDriftPercentileNanos(99.9) / 1e3,
+                maxDriftNanos / 1e6, late, untimed);
+    }
+}
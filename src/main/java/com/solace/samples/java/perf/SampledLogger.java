@@ -0,0 +1,63 @@
+package com.solace.samples.java.perf;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+
+/**
+ * Per-message logging for publish loops, writing 1 in every <code>sampleEvery</code> messages to
+ * one of:
+ * <ul>
+ *   <li><b>stdout</b>: <code>System.out</code>, formatted on the calling thread (the old behaviour)</li>
+ *   <li><b>log4j</b>: a log4j2 logger, passing the parameters unformatted. With the async profile
+ *       (<code>-Dlog4j2.configurationFile=log4j2-async.xml</code>) the event goes onto the
+ *       pre-allocated ring buffer of an async logger and is formatted and written by the
+ *       background thread, so the publishing thread neither blocks on I/O nor allocates</li>
+ *   <li><b>off</b>: nothing</li>
+ * </ul>
+ * Messages use log4j's <code>{}</code> placeholders in every mode. The sample counter is a plain
+ * field, so each publishing thread should have its own instance.
+ */
+public final class SampledLogger {
+
+    /** Logger name used for per-message lines, so configurations can route them separately. */
+    public static final String MESSAGES_LOGGER = "com.solace.samples.messages";
+
+    private final boolean stdout;
+    private final Logger logger;
+    private final int sampleEvery;
+    private long count;
+
+    /**
+     * @param mode        <code>stdout</code>, <code>log4j</code> or <code>off</code>
+     * @param sampleEvery log 1 in this many messages, 1 for all
+     */
+    public SampledLogger(String mode, int sampleEvery) {
+        if (!mode.equals("stdout") && !mode.equals("log4j") && !mode.equals("off")) {
+            throw new IllegalArgumentException("Unknown message log mode: " + mode);
+        }
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("Sample interval must be at least 1: " + sampleEvery);
+        }
+        this.stdout = mode.equals("stdout");
+        this.logger = mode.equals("log4j") ? LogManager.getLogger(MESSAGES_LOGGER) : null;
+        this.sampleEvery = sampleEvery;
+    }
+
+    /** Counts one message and says whether it is one to log; cheap enough to call on every message. */
+    public boolean isSampled() {
+        if (logger != null ? !logger.isInfoEnabled() : !stdout) {
+            return false;
+        }
+        return sampleEvery == 1 || count++ % sampleEvery == 0;
+    }
+
+    /** Logs unconditionally; callers check {@link #isSampled()} first. */
+    public void log(String message, Object p0, Object p1, Object p2) {
+        if (logger != null) {
+            logger.info(message, p0, p1, p2);  // fixed-arity overload: no varargs array
+        } else if (stdout) {
+            System.out.println(ParameterizedMessage.format(message, new Object[]{p0, p1, p2}));
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.solace.samples.java.perf;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Receiver-side loss accounting for per-topic sequence numbers. Each publisher numbers the
+ * messages it sends on each topic 1, 2, 3... (<code>-Dsequence=true</code> on both sides), and
+ * this tracker follows every (topic, sender) stream and counts:
+ * <ul>
+ *   <li><b>missing</b>: sequence numbers skipped and not (yet) seen, i.e. lost messages</li>
+ *   <li><b>duplicate</b>: a sequence number seen twice</li>
+ *   <li><b>reordered</b>: a sequence number that arrived after a higher one, filling a gap</li>
+ *   <li><b>broker / internal discard</b>: messages that carried the API's discard indication.
+ *       The indication is per session, not per topic: it lands on whichever topic's message
+ *       arrives next, so the missing counts say which topics actually lost data.</li>
+ *   <li><b>restarts</b>: a stream that started again from 1, e.g. a restarted publisher</li>
+ * </ul>
+ * Duplicates and late arrivals are told apart with a 64-message window of recently seen
+ * sequence numbers per stream. Anything older than that counts as reordered.
+ * <p>
+ * The per-message path allocates nothing: streams are found through an open-addressing
+ * hash table of <code>int</code> slots, and all counters live in one <code>long[]</code>, one
+ * row per stream. Methods are synchronized: call {@link #record} from the receiver's dispatch
+ * thread, where arrival order is still broker order, and report from any thread.
+ */
+public final class SequenceTracker {
+
+    private static final int WINDOW = 64;
+
+    // counter columns, one row of FIELDS longs per stream
+    private static final int EXPECTED = 0;       // next sequence number due
+    private static final int SEEN = 1;           // bit i: EXPECTED - 1 - i has arrived
+    private static final int RECEIVED = 2;
+    private static final int MISSING = 3;        // first of the anomaly counters
+    private static final int DUPLICATE = 4;
+    private static final int REORDERED = 5;
+    private static final int BROKER_DISCARD = 6;
+    private static final int INTERNAL_DISCARD = 7;
+    private static final int RESTART = 8;        // last of the anomaly counters
+    private static final int FIRST_ANOMALY_MILLIS = 9;
+    private static final int LAST_ANOMALY_MILLIS = 10;
+    private static final int REPORTED = 11;      // anomaly counters as of the last printInterval()
+    private static final int ANOMALIES = RESTART - MISSING + 1;
+    private static final int FIELDS = REPORTED + ANOMALIES;
+
+    private static final String[] ANOMALY_NAMES = {
+            "missing", "duplicate", "reordered", "broker discard", "internal discard", "restarts" };
+
+    private String[] topics = new String[16];
+    private String[] senders = new String[16];
+    private long[] stats = new long[16 * FIELDS];
+    private int streams;
+    private int[] table = new int[32];  // stream index + 1, 0 for empty; at most half full
+    private long lastIntervalReceived;
+
+    /** Whether per-topic sequence numbering is on (<code>-Dsequence=true</code>). */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean("sequence");
+    }
+
+    /**
+     * Records one message.
+     *
+     * @param topic           destination the message arrived on
+     * @param sender          publisher's sender id, may be null
+     * @param sequence        the publisher's sequence number for this topic, starting from 1
+     * @param brokerDiscard   the message carried a broker discard indication
+     * @param internalDiscard the message carried an API-internal discard indication
+     */
+    public synchronized void record(String topic, String sender, long sequence,
+                                    boolean brokerDiscard, boolean internalDiscard) {
+        final int row = streamIndex(topic, sender) * FIELDS;
+        final long[] s = stats;
+        s[row + RECEIVED]++;
+        boolean anomaly = false;
+        if (brokerDiscard) {
+            s[row + BROKER_DISCARD]++;
+            anomaly = true;
+        }
+        if (internalDiscard) {
+            s[row + INTERNAL_DISCARD]++;
+            anomaly = true;
+        }
+        final long expected = s[row + EXPECTED];
+        if (expected == 0) {  // first message of this stream: start counting from here
+            s[row + EXPECTED] = sequence + 1;
+            s[row + SEEN] = 1;
+        } else if (sequence == expected) {
+            s[row + EXPECTED] = expected + 1;
+            s[row + SEEN] = s[row + SEEN] << 1 | 1;
+        } else if (sequence > expected) {  // gap
+            final long skipped = sequence - expected;
+            s[row + MISSING] += skipped;
+            s[row + EXPECTED] = sequence + 1;
+            s[row + SEEN] = skipped + 1 >= WINDOW ? 1 : s[row + SEEN] << (skipped + 1) | 1;
+            anomaly = true;
+        } else if (sequence <= 1 && expected - sequence > WINDOW) {  // started again from the beginning
+            s[row + RESTART]++;
+            s[row + EXPECTED] = sequence + 1;
+            s[row + SEEN] = 1;
+            anomaly = true;
+        } else {  // behind: a late message or a duplicate
+            final long age = expected - 1 - sequence;
+            if (age < WINDOW && (s[row + SEEN] & 1L << age) != 0) {
+                s[row + DUPLICATE]++;
+            } else {
+                if (age < WINDOW) {
+                    s[row + SEEN] |= 1L << age;
+                }
+                s[row + REORDERED]++;
+                if (s[row + MISSING] > 0) {
+                    s[row + MISSING]--;  // it was counted missing when the gap opened
+                }
+            }
+            anomaly = true;
+        }
+        if (anomaly) {
+            final long now = System.currentTimeMillis();
+            if (s[row + FIRST_ANOMALY_MILLIS] == 0) {
+                s[row + FIRST_ANOMALY_MILLIS] = now;
+            }
+            s[row + LAST_ANOMALY_MILLIS] = now;
+        }
+    }
+
+    /**
+     * Prints the messages since the previous call and the anomaly totals so far, then one
+     * timestamped line for every stream whose anomaly counters changed since the previous call.
+     */
+    public synchronized void printInterval() {
+        final long[] totals = totals();
+        System.out.printf("Sequence check: %,d msgs on %,d streams | so far %s%n",
+                totals[RECEIVED] - lastIntervalReceived, streams, describe(totals, MISSING));
+        lastIntervalReceived = totals[RECEIVED];
+        final SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss.SSS");
+        for (int i = 0; i < streams; i++) {
+            final int row = i * FIELDS;
+            StringBuilder changes = null;
+            for (int a = 0; a < ANOMALIES; a++) {
+                final long delta = stats[row + MISSING + a] - stats[row + REPORTED + a];
+                if (delta != 0) {
+                    changes = changes == null ? new StringBuilder() : changes.append(", ");
+                    changes.append(String.format("%+,d %s", delta, ANOMALY_NAMES[a]));
+                    stats[row + REPORTED + a] = stats[row + MISSING + a];
+                }
+            }
+            if (changes != null) {
+                System.out.printf("  %s %s: %s%n", time.format(new Date(stats[row + LAST_ANOMALY_MILLIS])),
+                        streamName(i), changes);
+            }
+        }
+    }
+
+    /** A table of every stream that saw an anomaly, with when it first and last did, then the totals. */
+    @Override
+    public synchronized String toString() {
+        final SimpleDateFormat time = new SimpleDateFormat("HH:mm:ss.SSS");
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < streams; i++) {
+            final int row = i * FIELDS;
+            if (stats[row + FIRST_ANOMALY_MILLIS] != 0) {
+                sb.append(String.format("  %s: %,d msgs | %s | first %s, last %s%n", streamName(i),
+                        stats[row + RECEIVED], describe(stats, row + MISSING),
+                        time.format(new Date(stats[row + FIRST_ANOMALY_MILLIS])),
+                        time.format(new Date(stats[row + LAST_ANOMALY_MILLIS]))));
+            }
+        }
+        final long[] totals = totals();
+        return sb.append(String.format("Sequence check total: %,d msgs on %,d streams | %s",
+                totals[RECEIVED], streams, describe(totals, MISSING))).toString();
+    }
+
+    private long[] totals() {
+        final long[] totals = new long[FIELDS];
+        for (int i = 0; i < streams; i++) {
+            for (int f = RECEIVED; f <= RESTART; f++) {
+                totals[f] += stats[i * FIELDS + f];
+            }
+        }
+        return totals;
+    }
+
+    private static String describe(long[] counters, int offset) {
+        final StringBuilder sb = new StringBuilder();
+        for (int a = 0; a < ANOMALIES; a++) {
+            sb.append(a == 0 ? "" : ", ").append(String.format("%,d %s", counters[offset + a], ANOMALY_NAMES[a]));
+        }
+        return sb.toString();
+    }
+
+    private String streamName(int stream) {
+        return senders[stream] == null ? topics[stream] : topics[stream] + " from " + senders[stream];
+    }
+
+    private static int hash(String topic, String sender) {
+        final int h = topic.hashCode() * 31 + (sender == null ? 0 : sender.hashCode());
+        return h ^ h >>> 16;
+    }
+
+    /** Finds the stream, adding it if new. */
+    private int streamIndex(String topic, String sender) {
+        int mask = table.length - 1;
+        for (int slot = hash(topic, sender) & mask; ; slot = slot + 1 & mask) {
+            final int entry = table[slot];
+            if (entry == 0) {
+                return addStream(slot, topic, sender);
+            }
+            final int stream = entry - 1;
+            if (topics[stream].equals(topic) && (sender == null ? senders[stream] == null : sender.equals(senders[stream]))) {
+                return stream;
+            }
+        }
+    }
+
+    private int addStream(int slot, String topic, String sender) {
+        final int stream = streams++;
+        if (stream == topics.length) {
+            topics = Arrays.copyOf(topics, stream * 2);
+            senders = Arrays.copyOf(senders, stream * 2);
+            stats = Arrays.copyOf(stats, stream * 2 * FIELDS);
+        }
+        topics[stream] = topic;
+        senders[stream] = sender;
+        table[slot] = stream + 1;
+        if (streams * 2 > table.length) {  // rehash into a table twice the size
+            final int[] bigger = new int[table.length * 2];
+            final int mask = bigger.length - 1;
+            for (int i = 0; i < streams; i++) {
+                int s = hash(topics[i], senders[i]) & mask;
+                while (bigger[s] != 0) {
+                    s = s + 1 & mask;
+                }
+                bigger[s] = i + 1;
+            }
+            table = bigger;
+        }
+        return stream;
+    }
+}
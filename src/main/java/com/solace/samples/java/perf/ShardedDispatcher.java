@@ -0,0 +1,188 @@
+package com.solace.samples.java.perf;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Moves message processing off a receiver's single dispatch thread onto N worker threads. Each
+ * message's key (e.g. its topic) is hashed to a worker, so messages with the same key are
+ * processed by the same worker in arrival order, while different keys are processed in parallel.
+ * <p>
+ * The dispatch thread is the only producer for every worker queue, so each worker gets a
+ * lock-free {@link SpscRingBuffer}. When a worker's queue is full, the dispatcher either waits
+ * for space, which slows the dispatch thread and pushes back onto the API and broker, or drops
+ * the message and counts it as a discard.
+ * <p>
+ * Idle workers spin briefly, then yield, then park for 50 us at a time, so an idle dispatcher
+ * does not burn cores.
+ *
+ * @param <E> message type
+ */
+public final class ShardedDispatcher<E> implements AutoCloseable {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = 50_000;
+
+    private final Function<E, String> keyExtractor;
+    private final boolean dropWhenFull;
+    private final Worker[] workers;
+    private volatile boolean running = true;
+
+    /**
+     * @param name           thread name prefix
+     * @param workerCount    number of worker threads
+     * @param queueCapacity  max messages queued per worker, rounded up to a power of two
+     * @param dropWhenFull   drop (and count) messages for a full worker instead of waiting
+     * @param keyExtractor   key whose hash picks the worker (null goes to worker 0)
+     * @param handlerFactory creates the handler for worker <code>i</code>
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})  // no generic array of an inner class
+    public ShardedDispatcher(String name, int workerCount, int queueCapacity, boolean dropWhenFull,
+                             Function<E, String> keyExtractor, IntFunction<Consumer<E>> handlerFactory) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Need at least 1 worker: " + workerCount);
+        }
+        this.keyExtractor = keyExtractor;
+        this.dropWhenFull = dropWhenFull;
+        this.workers = new ShardedDispatcher.Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(name + "-worker-" + i, queueCapacity, handlerFactory.apply(i));
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Queues the message for its worker. Call from the single dispatch thread only.
+     *
+     * @return false if the message was dropped because its worker's queue was full
+     */
+    public boolean dispatch(E message) {
+        String key = keyExtractor.apply(message);
+        Worker worker = workers[key == null ? 0 : (key.hashCode() & Integer.MAX_VALUE) % workers.length];
+        if ((++worker.dispatched & 63) == 0) {  // sample the depth, reading the consumer's counter is not free
+            int depth = worker.queue.size();
+            if (depth > worker.maxDepth) {
+                worker.maxDepth = depth;
+            }
+        }
+        if (worker.queue.offer(message)) {
+            return true;
+        }
+        if (dropWhenFull) {
+            worker.dropped.increment();
+            return false;
+        }
+        worker.waits.increment();
+        while (!worker.queue.offer(message)) {
+            if (!running) {
+                worker.dropped.increment();
+                return false;
+            }
+            Thread.yield();
+        }
+        return true;
+    }
+
+    /**
+     * Processes everything already queued, then stops the workers. If the calling thread is
+     * interrupted, returns without waiting for the workers, with the interrupt flag set again.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        try {
+            for (Worker worker : workers) {
+                worker.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();  // let the caller see it; queued messages may be lost
+        }
+    }
+
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    public long getDropped() {
+        long dropped = 0;
+        for (Worker worker : workers) {
+            dropped += worker.dropped.sum();
+        }
+        return dropped;
+    }
+
+    /**
+     * Prints one line per worker: messages processed since the previous call, current and
+     * largest sampled queue depth, and messages dropped or waited on since the previous call.
+     * Call from one thread, e.g. the stats printer.
+     */
+    public void printStats() {
+        for (int i = 0; i < workers.length; i++) {
+            Worker worker = workers[i];
+            long processed = worker.processed.sum();
+            long dropped = worker.dropped.sum();
+            long waits = worker.waits.sum();
+            System.out.printf("  worker %d: %,d msgs, depth %,d (max %,d of %,d), %,d dropped, %,d full-queue waits%n",
+                    i, processed - worker.lastProcessed, worker.queue.size(), worker.maxDepth, worker.queue.capacity(),
+                    dropped - worker.lastDropped, waits - worker.lastWaits);
+            worker.lastProcessed = processed;
+            worker.lastDropped = dropped;
+            worker.lastWaits = waits;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private final class Worker implements Runnable {
+        private final SpscRingBuffer<E> queue;
+        private final Consumer<E> handler;
+        private final Thread thread;
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder waits = new LongAdder();
+        private long dispatched;          // dispatch thread only
+        private volatile int maxDepth;    // written by the dispatch thread, read by the printer
+        private long lastProcessed;       // printer only
+        private long lastDropped;
+        private long lastWaits;
+
+        private Worker(String name, int queueCapacity, Consumer<E> handler) {
+            this.queue = new SpscRingBuffer<>(queueCapacity);
+            this.handler = handler;
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (true) {
+                E message = queue.poll();
+                if (message != null) {
+                    idle = 0;
+                    try {
+                        handler.accept(message);
+                    } catch (RuntimeException e) {  // keep the worker alive
+                        System.out.printf("### %s caught while processing a message: %s%n", thread.getName(), e);
+                    }
+                    processed.increment();
+                } else if (!running && queue.size() == 0) {
+                    return;
+                } else if (++idle > YIELD_TRIES) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                } else if (idle > SPIN_TRIES) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+}
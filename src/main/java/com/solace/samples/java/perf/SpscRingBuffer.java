@@ -0,0 +1,76 @@
+package com.solace.samples.java.perf;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for exactly one producer thread and one consumer thread.
+ * <p>
+ * Slots are a power-of-two array indexed by ever-increasing head and tail counters. Each side
+ * publishes its counter with an ordered (lazySet) write instead of a full volatile write, and
+ * keeps a cached copy of the other side's counter so it only reads the shared one when the
+ * cache says the queue looks full (producer) or empty (consumer). No locks, no allocation per
+ * element, and no CAS: the cost per element is a couple of ordered stores.
+ *
+ * @param <E> element type
+ */
+public final class SpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();  // next slot to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong();  // next slot to write, written by the producer
+    private long cachedHead;  // producer's view of head
+    private long cachedTail;  // consumer's view of tail
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public SpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+        this.mask = slots.length() - 1;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    /** Producer only: adds the element, or returns false if the queue is full. */
+    public boolean offer(E element) {
+        long t = tail.get();
+        if (t - cachedHead >= slots.length()) {
+            cachedHead = head.get();
+            if (t - cachedHead >= slots.length()) {
+                return false;
+            }
+        }
+        slots.lazySet((int) t & mask, element);
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /** Consumer only: removes and returns the oldest element, or null if the queue is empty. */
+    public E poll() {
+        long h = head.get();
+        if (h >= cachedTail) {
+            cachedTail = tail.get();
+            if (h >= cachedTail) {
+                return null;
+            }
+        }
+        int index = (int) h & mask;
+        E element = slots.get(index);
+        slots.lazySet(index, null);
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    /** Approximate number of queued elements; safe to call from any thread. */
+    public int size() {
+        long h = head.get();
+        return (int) Math.max(0, tail.get() - h);
+    }
+}
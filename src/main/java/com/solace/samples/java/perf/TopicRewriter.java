@@ -0,0 +1,113 @@
+package com.solace.samples.java.perf;
+
+import com.solace.messaging.resources.Topic;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rewrites the leading levels of a topic and keeps the rest, e.g. with the pattern
+ * <code>solace/samples/&#42;/direct/pub</code> and the replacement
+ * <code>solace/samples/java/direct/upper</code>, <code>solace/samples/go/direct/pub/K</code>
+ * becomes <code>solace/samples/java/direct/upper/K</code>. A <code>*</code> pattern level
+ * matches any one level.
+ * <p>
+ * Matching walks the topic's characters in place, comparing each level against the pattern with
+ * <code>regionMatches</code>: no regex, no <code>split()</code> array, no substrings. The
+ * resulting {@link Topic}s are kept in a bounded LRU map keyed by inbound topic name, so at
+ * steady state a rewrite is one scan plus one map lookup and allocates nothing. Topics that do
+ * not match are not cached.
+ * <p>
+ * Not thread-safe: use one instance per processing thread.
+ */
+public final class TopicRewriter {
+
+    private final String[] patternLevels;
+    private final String replacement;
+    private final LruMap cache;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param pattern     leading levels to match, <code>*</code> for any one level
+     * @param replacement levels to put in their place
+     * @param maxEntries  most rewritten topics to keep; the least recently used goes first
+     */
+    public TopicRewriter(String pattern, String replacement, int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache needs at least 1 entry: " + maxEntries);
+        }
+        this.patternLevels = pattern.split("/");  // once, at startup
+        this.replacement = replacement;
+        this.cache = new LruMap(maxEntries);
+    }
+
+    /**
+     * @return the rewritten topic, or null if the inbound topic does not match the pattern or has
+     *         no levels after it
+     */
+    public Topic rewrite(String inboundTopic) {
+        Topic topic = cache.get(inboundTopic);
+        if (topic != null) {
+            hits++;
+            return topic;
+        }
+        final int rest = matchEnd(inboundTopic);
+        if (rest < 0) {
+            return null;
+        }
+        misses++;
+        topic = Topic.of(new StringBuilder(replacement.length() + inboundTopic.length() - rest + 1)
+                .append(replacement).append('/').append(inboundTopic, rest, inboundTopic.length()).toString());
+        cache.put(inboundTopic, topic);
+        return topic;
+    }
+
+    /** Index of the first character after the matched levels and their '/', or -1 for no match. */
+    private int matchEnd(String topic) {
+        int start = 0;
+        for (String level : patternLevels) {
+            final int end = topic.indexOf('/', start);
+            if (end < 0) {  // ran out of levels: the pattern must be followed by at least one more
+                return -1;
+            }
+            if (!level.equals("*") && (end - start != level.length() || !topic.regionMatches(start, level, 0, end - start))) {
+                return -1;
+            }
+            start = end + 1;
+        }
+        return start < topic.length() ? start : -1;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d cached topics (max %,d), %,d hits, %,d misses",
+                cache.size(), cache.maxEntries, hits, misses);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /** Access-ordered, so a hit moves the entry to the young end; neither allocates. */
+    private static final class LruMap extends LinkedHashMap<String, Topic> {
+        private static final long serialVersionUID = 1L;
+        private final int maxEntries;
+
+        private LruMap(int maxEntries) {
+            super(Math.min(maxEntries, 1024) * 4 / 3 + 1, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Topic> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package com.solace.samples.java.router;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A filter over event fields, compiled once from an expression such as
+ * <pre>
+ *   region in (ae, eu) and status == 'failure'
+ *   not (lineOfBusiness == retail or customerId in ('CUST1001', 'CUST1002'))
+ *   timestamp &gt;= '2025-04-29T09:00:00Z' and loanId != null
+ * </pre>
+ * Operators are <code>== != &lt; &lt;= &gt; &gt;=</code>, <code>in (...)</code>,
+ * <code>not in (...)</code>, <code>and</code>, <code>or</code>, <code>not</code> and parentheses.
+ * Values are quoted strings, bare words or numbers; <code>null</code> matches a missing field.
+ * Field values are compared as the text <code>JsonNode.asText()</code> gives (so a JSON null is
+ * the text <code>'null'</code>, same as in raw mode); ordering operators
+ * compare numerically when both sides are numbers, otherwise as strings (which orders ISO-8601
+ * timestamps correctly).
+ * <p>
+ * The expression compiles to a tree of predicates over field slots. Evaluation short-circuits and
+ * reads a field only when a node needs it, so a filter touches only the fields it names, and only
+ * those it gets to. Instances are immutable and thread-safe.
+ */
+public final class EventFilter {
+
+    private final String expression;
+    private final String[] fields;
+    private final Node root;
+    private final ThreadLocal<JsonValues> jsonValues;
+
+    private EventFilter(String expression, String[] fields, Node root) {
+        this.expression = expression;
+        this.fields = fields;
+        this.root = root;
+        this.jsonValues = ThreadLocal.withInitial(() -> new JsonValues(fields));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is not valid, naming the position
+     */
+    public static EventFilter compile(String expression) {
+        Parser parser = new Parser(expression);
+        Node root = parser.parseExpression();
+        parser.expectEnd();
+        return new EventFilter(expression, parser.fields.toArray(new String[0]), root);
+    }
+
+    /** Names of the fields the expression refers to, in order of first use. */
+    public String[] getFields() {
+        return fields.clone();
+    }
+
+    public boolean test(JsonNode event) {
+        JsonValues values = jsonValues.get();
+        values.event = event;
+        try {
+            return root.test(values);
+        } finally {
+            values.event = null;
+        }
+    }
+
+    /**
+     * Binds the filter to values scanned by <code>scanner</code>, which must scan every field in
+     * {@link #getFields()}.
+     */
+    public Predicate<String[]> bind(FieldScanner scanner) {
+        int[] indexes = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            indexes[i] = scanner.indexOf(fields[i]);
+            if (indexes[i] < 0) {
+                throw new IllegalArgumentException("Scanner does not read filter field '" + fields[i] + "'");
+            }
+        }
+        return scanned -> root.test(slot -> scanned[indexes[slot]]);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /** Field values by slot, fetched on demand. */
+    private interface Values {
+        String get(int slot);
+    }
+
+    private static final class JsonValues implements Values {
+        private final String[] fields;
+        private JsonNode event;
+
+        private JsonValues(String[] fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        public String get(int slot) {
+            JsonNode node = event.get(fields[slot]);
+            return node == null ? null : node.asText();
+        }
+    }
+
+    private abstract static class Node {
+        abstract boolean test(Values values);
+    }
+
+    private static final class And extends Node {
+        private final Node[] terms;
+
+        private And(List<Node> terms) {
+            this.terms = terms.toArray(new Node[0]);
+        }
+
+        @Override
+        boolean test(Values values) {
+            for (Node term : terms) {
+                if (!term.test(values)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Or extends Node {
+        private final Node[] terms;
+
+        private Or(List<Node> terms) {
+            this.terms = terms.toArray(new Node[0]);
+        }
+
+        @Override
+        boolean test(Values values) {
+            for (Node term : terms) {
+                if (term.test(values)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Not extends Node {
+        private final Node term;
+
+        private Not(Node term) {
+            this.term = term;
+        }
+
+        @Override
+        boolean test(Values values) {
+            return !term.test(values);
+        }
+    }
+
+    private static final class IsNull extends Node {
+        private final int slot;
+
+        private IsNull(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        boolean test(Values values) {
+            return values.get(slot) == null;
+        }
+    }
+
+    private static final class Compare extends Node {
+        private final int slot;
+        private final String op;
+        private final String constant;
+        private final double number;  // NaN when the constant is not numeric
+
+        private Compare(int slot, String op, String constant) {
+            this.slot = slot;
+            this.op = op;
+            this.constant = constant;
+            this.number = parseNumber(constant);
+        }
+
+        @Override
+        boolean test(Values values) {
+            String value = values.get(slot);
+            if (value == null) {
+                return op.equals("!=");
+            }
+            int cmp;
+            if (!Double.isNaN(number)) {
+                double v = parseNumber(value);
+                cmp = Double.isNaN(v) ? value.compareTo(constant) : Double.compare(v, number);
+            } else {
+                cmp = value.compareTo(constant);
+            }
+            switch (op) {
+                case "==": return cmp == 0;
+                case "!=": return cmp != 0;
+                case "<":  return cmp < 0;
+                case "<=": return cmp <= 0;
+                case ">":  return cmp > 0;
+                default:   return cmp >= 0;  // ">="
+            }
+        }
+    }
+
+    private static final class In extends Node {
+        private final int slot;
+        private final String[] smallSet;  // linear scan beats hashing for a handful of values
+        private final Set<String> largeSet;
+
+        private In(int slot, List<String> constants) {
+            this.slot = slot;
+            if (constants.size() <= 4) {
+                this.smallSet = constants.toArray(new String[0]);
+                this.largeSet = null;
+            } else {
+                this.smallSet = null;
+                this.largeSet = new HashSet<>(constants);
+            }
+        }
+
+        @Override
+        boolean test(Values values) {
+            String value = values.get(slot);
+            if (value == null) {
+                return false;
+            }
+            if (largeSet != null) {
+                return largeSet.contains(value);
+            }
+            for (String constant : smallSet) {
+                if (constant.equals(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Plain decimal numbers only; NaN for anything else, without throwing. */
+    static double parseNumber(String s) {
+        int n = s.length();
+        if (n == 0 || n > 32) {
+            return Double.NaN;
+        }
+        int i = s.charAt(0) == '-' ? 1 : 0;
+        boolean digits = false;
+        boolean dot = false;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        return digits ? Double.parseDouble(s) : Double.NaN;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Recursive-descent parser:
+     * <pre>
+     *   expr       := and ('or' and)*
+     *   and        := unary ('and' unary)*
+     *   unary      := 'not' unary | '(' expr ')' | comparison
+     *   comparison := field op value | field ['not'] 'in' '(' value (',' value)* ')'
+     * </pre>
+     */
+    private static final class Parser {
+        private static final List<String> OPERATORS = Arrays.asList("==", "!=", "<=", ">=", "<", ">", "=");
+
+        private final String text;
+        private final List<String> fields = new ArrayList<>();
+        private int pos;
+
+        private Parser(String text) {
+            this.text = text;
+        }
+
+        private Node parseExpression() {
+            List<Node> terms = new ArrayList<>();
+            terms.add(parseAnd());
+            while (acceptKeyword("or")) {
+                terms.add(parseAnd());
+            }
+            return terms.size() == 1 ? terms.get(0) : new Or(terms);
+        }
+
+        private Node parseAnd() {
+            List<Node> terms = new ArrayList<>();
+            terms.add(parseUnary());
+            while (acceptKeyword("and")) {
+                terms.add(parseUnary());
+            }
+            return terms.size() == 1 ? terms.get(0) : new And(terms);
+        }
+
+        private Node parseUnary() {
+            if (acceptKeyword("not")) {
+                return new Not(parseUnary());
+            }
+            if (accept("(")) {
+                Node node = parseExpression();
+                expect(")");
+                return node;
+            }
+            return parseComparison();
+        }
+
+        private Node parseComparison() {
+            int start = skipWhitespace();
+            String field = readWord();
+            if (field == null) {
+                throw error(start, "expected a field name");
+            }
+            int slot = slotOf(field);
+            boolean negated = acceptKeyword("not");
+            if (acceptKeyword("in")) {
+                expect("(");
+                List<String> constants = new ArrayList<>();
+                do {
+                    constants.add(readValue());
+                } while (accept(","));
+                expect(")");
+                Node in = new In(slot, constants);
+                return negated ? new Not(in) : in;
+            }
+            if (negated) {
+                throw error(pos, "expected 'in' after 'not'");
+            }
+            String op = readOperator();
+            int valueStart = skipWhitespace();
+            String value = readValue();
+            if (value == null) {
+                if (op.equals("==") || op.equals("!=")) {
+                    return op.equals("==") ? new IsNull(slot) : new Not(new IsNull(slot));
+                }
+                throw error(valueStart, "null can only be compared with == or !=");
+            }
+            return new Compare(slot, op, value);
+        }
+
+        private int slotOf(String field) {
+            int slot = fields.indexOf(field);
+            if (slot < 0) {
+                fields.add(field);
+                slot = fields.size() - 1;
+            }
+            return slot;
+        }
+
+        private String readOperator() {
+            skipWhitespace();
+            for (String op : OPERATORS) {
+                if (text.startsWith(op, pos)) {
+                    pos += op.length();
+                    return op.equals("=") ? "==" : op;
+                }
+            }
+            throw error(pos, "expected an operator (== != < <= > >= in)");
+        }
+
+        /** A quoted string, a bare word, or null for the null keyword. */
+        private String readValue() {
+            int start = skipWhitespace();
+            if (pos < text.length() && (text.charAt(pos) == '\'' || text.charAt(pos) == '"')) {
+                char quote = text.charAt(pos++);
+                StringBuilder sb = new StringBuilder();
+                while (pos < text.length() && text.charAt(pos) != quote) {
+                    char c = text.charAt(pos++);
+                    if (c == '\\' && pos < text.length()) {
+                        c = text.charAt(pos++);
+                    }
+                    sb.append(c);
+                }
+                if (pos >= text.length()) {
+                    throw error(start, "unterminated string");
+                }
+                pos++;
+                return sb.toString();
+            }
+            String word = readWord();
+            if (word == null) {
+                throw error(start, "expected a value");
+            }
+            return word.equalsIgnoreCase("null") ? null : word;
+        }
+
+        private String readWord() {
+            skipWhitespace();
+            int start = pos;
+            while (pos < text.length() && isWordChar(text.charAt(pos))) {
+                pos++;
+            }
+            return pos == start ? null : text.substring(start, pos);
+        }
+
+        private static boolean isWordChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':' || c == '/';
+        }
+
+        private boolean acceptKeyword(String keyword) {
+            int save = pos;
+            String word = readWord();
+            if (word != null && word.toLowerCase(Locale.ROOT).equals(keyword)) {
+                return true;
+            }
+            pos = save;
+            return false;
+        }
+
+        private boolean accept(String token) {
+            skipWhitespace();
+            if (text.startsWith(token, pos)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw error(pos, "expected '" + token + "'");
+            }
+        }
+
+        private void expectEnd() {
+            if (skipWhitespace() < text.length()) {
+                throw error(pos, "unexpected '" + text.substring(pos) + "'");
+            }
+        }
+
+        private int skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            return pos;
+        }
+
+        private IllegalArgumentException error(int at, String message) {
+            return new IllegalArgumentException("Bad filter at position " + at + ": " + message + " in \"" + text + "\"");
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.solace.samples.java.router;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A pull-style source of routing events. Implementations hand out one event at a time so the
+ * router can start publishing before the whole input has been read.
+ */
+public interface EventSource extends Closeable {
+
+    /**
+     * Returns the next event, or <code>null</code> once the input is exhausted.
+     */
+    JsonNode next() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+        // nothing to release by default
+    }
+
+    /**
+     * Wraps an already loaded list of events, as used by the original whole-file mode.
+     */
+    static EventSource of(List<JsonNode> events) {
+        final Iterator<JsonNode> it = events.iterator();
+        return () -> it.hasNext() ? it.next() : null;
+    }
+}
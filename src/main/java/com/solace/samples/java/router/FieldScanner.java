@@ -0,0 +1,206 @@
+package com.solace.samples.java.router;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pulls a handful of top-level fields out of the raw bytes of one JSON object without building a
+ * tree. Only the values of the requested fields are turned into Strings; everything else is
+ * skipped byte by byte. Values are rendered the way <code>JsonNode.asText()</code> would:
+ * strings unescaped, other scalars as written, objects and arrays as an empty string, and a
+ * missing field as <code>null</code>.
+ * <p>
+ * Field names must be plain ASCII. Instances are immutable and can be shared between threads.
+ */
+public class FieldScanner {
+
+    private final String[] fieldNames;
+    private final byte[][] names;
+
+    public FieldScanner(String... fieldNames) {
+        this.fieldNames = fieldNames.clone();
+        this.names = new byte[fieldNames.length][];
+        for (int i = 0; i < fieldNames.length; i++) {
+            names[i] = fieldNames[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    public int fieldCount() {
+        return names.length;
+    }
+
+    /** Position of the field in the scan results, or -1 if not scanned. */
+    public int indexOf(String fieldName) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (fieldNames[i].equals(fieldName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scans one JSON object, storing the value of the i-th requested field in <code>values[i]</code>.
+     *
+     * @return the number of requested fields found
+     * @throws IllegalArgumentException if the bytes are not a well-formed JSON object
+     */
+    public int scan(byte[] buf, int offset, int length, String[] values) {
+        Arrays.fill(values, 0, names.length, null);
+        int end = offset + length;
+        int p = skipWhitespace(buf, offset, end);
+        if (p >= end || buf[p] != '{') {
+            throw new IllegalArgumentException("Not a JSON object");
+        }
+        int found = 0;
+        p++;
+        while (true) {
+            p = skipWhitespace(buf, p, end);
+            if (p >= end) {
+                throw new IllegalArgumentException("Unterminated JSON object");
+            }
+            byte b = buf[p];
+            if (b == '}') {
+                return found;
+            }
+            if (b == ',') {
+                p++;
+                continue;
+            }
+            if (b != '"') {
+                throw new IllegalArgumentException("Expected a field name at byte " + (p - offset));
+            }
+            int keyStart = p + 1;
+            p = skipString(buf, p, end);
+            int field = match(buf, keyStart, p - 1);
+            p = skipWhitespace(buf, p, end);
+            if (p >= end || buf[p] != ':') {
+                throw new IllegalArgumentException("Expected ':' at byte " + (p - offset));
+            }
+            p = skipWhitespace(buf, p + 1, end);
+            int valueStart = p;
+            p = skipValue(buf, p, end);
+            if (field >= 0 && values[field] == null) {
+                values[field] = text(buf, valueStart, p);
+                found++;
+            }
+        }
+    }
+
+    private int match(byte[] buf, int start, int end) {
+        int len = end - start;
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = names[i];
+            if (name.length != len) {
+                continue;
+            }
+            int j = 0;
+            while (j < len && buf[start + j] == name[j]) {
+                j++;
+            }
+            if (j == len) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String text(byte[] buf, int start, int end) {
+        byte first = buf[start];
+        if (first == '"') {
+            for (int i = start + 1; i < end - 1; i++) {
+                if (buf[i] == '\\') {
+                    return unescape(buf, start + 1, end - 1);
+                }
+            }
+            return new String(buf, start + 1, end - start - 2, StandardCharsets.UTF_8);
+        }
+        if (first == '{' || first == '[') {
+            return "";
+        }
+        return new String(buf, start, end - start, StandardCharsets.US_ASCII);
+    }
+
+    private static String unescape(byte[] buf, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        int runStart = start;
+        int i = start;
+        while (i < end) {
+            if (buf[i] != '\\') {
+                i++;
+                continue;
+            }
+            sb.append(new String(buf, runStart, i - runStart, StandardCharsets.UTF_8));
+            char c = (char) buf[i + 1];
+            switch (c) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(new String(buf, i + 2, 4, StandardCharsets.US_ASCII), 16));
+                    i += 4;
+                    break;
+                default: sb.append(c);  // \" \\ \/
+            }
+            i += 2;
+            runStart = i;
+        }
+        sb.append(new String(buf, runStart, end - runStart, StandardCharsets.UTF_8));
+        return sb.toString();
+    }
+
+    private static int skipWhitespace(byte[] buf, int p, int end) {
+        while (p < end && (buf[p] == ' ' || buf[p] == '\n' || buf[p] == '\r' || buf[p] == '\t')) {
+            p++;
+        }
+        return p;
+    }
+
+    /** @return the index just past the closing quote */
+    private static int skipString(byte[] buf, int p, int end) {
+        p++;
+        while (p < end) {
+            byte b = buf[p++];
+            if (b == '\\') {
+                p++;
+            } else if (b == '"') {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException("Unterminated JSON string");
+    }
+
+    private static int skipValue(byte[] buf, int p, int end) {
+        if (p >= end) {
+            throw new IllegalArgumentException("Missing JSON value");
+        }
+        byte b = buf[p];
+        if (b == '"') {
+            return skipString(buf, p, end);
+        }
+        if (b == '{' || b == '[') {
+            int depth = 0;
+            while (p < end) {
+                b = buf[p];
+                if (b == '"') {
+                    p = skipString(buf, p, end);
+                    continue;
+                }
+                p++;
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    return p;
+                }
+            }
+            throw new IllegalArgumentException("Unterminated JSON object or array");
+        }
+        while (p < end && (b = buf[p]) != ',' && b != '}' && b != ']'
+                && b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+            p++;
+        }
+        return p;
+    }
+}
@@ -0,0 +1,227 @@
+package com.solace.samples.java.router;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows an NDJSON file that an upstream process keeps appending to, like <code>tail -f</code>.
+ * Only complete lines are turned into events; a partially written last line is held back until
+ * its newline arrives. When the end of the file is reached, the reader waits on a
+ * {@link WatchService} for the file to change (with a short poll as a fallback for platforms
+ * whose watch service is slow), so new events are picked up within milliseconds.
+ * <p>
+ * The byte offset just past the last processed event is saved to a checkpoint file periodically
+ * and on {@link #close()}, and loaded again at start, so a restarted router carries on where it
+ * left off instead of re-sending the whole file. An event counts as processed once the router
+ * asks for the next one, which gives at-least-once delivery across restarts. If the file shrinks
+ * below the saved offset it is treated as truncated and read again from the start.
+ */
+public class FollowingNdjsonEventSource implements EventSource {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long WATCH_POLL_MS = 100;
+
+    private final Path file;
+    private final Path checkpointFile;
+    private final long checkpointIntervalNanos;
+    private final WatchService watcher;
+    private FileChannel channel;
+
+    private byte[] data = new byte[1 << 20];  // unconsumed bytes are data[start..end)
+    private int start = 0;
+    private int end = 0;
+    private int scanFrom = 0;          // no newline in data[start..scanFrom)
+    private long consumedOffset;       // file offset of data[start]
+    private long readOffset;           // file offset of data[end]
+    private long returnedOffset;       // end of the last event handed out
+    private long checkpointedOffset = -1;
+    private long lastCheckpointNanos = System.nanoTime();
+    private volatile boolean stopped = false;
+
+    /**
+     * @param file                 the NDJSON file to follow
+     * @param checkpointFile       where the processed offset is kept between runs
+     * @param checkpointIntervalMs how often to save the offset while running
+     */
+    public FollowingNdjsonEventSource(Path file, Path checkpointFile, long checkpointIntervalMs) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.checkpointFile = checkpointFile;
+        this.checkpointIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkpointIntervalMs);
+        this.channel = FileChannel.open(this.file, StandardOpenOption.READ);
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watcher,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+
+        long offset = loadCheckpoint();
+        if (offset > channel.size()) {
+            System.out.printf("Checkpoint offset %,d is past the end of %s, starting from the beginning%n", offset, file);
+            offset = 0;
+        }
+        consumedOffset = readOffset = returnedOffset = offset;
+        if (offset > 0) {
+            System.out.printf("Resuming %s from checkpoint offset %,d%n", file, offset);
+        }
+    }
+
+    @Override
+    public JsonNode next() throws IOException {
+        maybeCheckpoint(returnedOffset);  // the previous event has been processed by now
+        while (!stopped) {
+            JsonNode event = nextBufferedEvent();
+            if (event != null) {
+                return event;
+            }
+            if (!readMore()) {
+                awaitChange();
+            }
+        }
+        return null;
+    }
+
+    /** Makes {@link #next()} return null, ending the router loop; safe to call from any thread. */
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeCheckpoint(returnedOffset);
+        watcher.close();
+        channel.close();
+    }
+
+    public long getOffset() {
+        return returnedOffset;
+    }
+
+    private JsonNode nextBufferedEvent() {
+        while (true) {
+            int newline = -1;
+            for (int i = Math.max(start, scanFrom); i < end; i++) {
+                if (data[i] == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            if (newline < 0) {
+                scanFrom = end;
+                return null;  // only a partial line (or nothing) buffered
+            }
+            int lineStart = start;
+            int lineEnd = newline > lineStart && data[newline - 1] == '\r' ? newline - 1 : newline;
+            consumedOffset += newline + 1 - start;
+            start = newline + 1;
+            if (lineEnd == lineStart) {
+                continue;  // blank line
+            }
+            try {
+                JsonNode event = MAPPER.readTree(data, lineStart, lineEnd - lineStart);
+                if (event != null && event.isObject()) {
+                    returnedOffset = consumedOffset;
+                    return event;
+                }
+            } catch (IOException e) {  // skip the bad line, keep following
+                System.err.printf("Skipping malformed NDJSON line ending at offset %,d: %s%n",
+                        consumedOffset, e.getMessage());
+            }
+            returnedOffset = consumedOffset;
+        }
+    }
+
+    /** Reads whatever has been appended since last time; false if nothing new. */
+    private boolean readMore() throws IOException {
+        if (channel.size() < readOffset) {
+            System.out.printf("%s was truncated, reading again from the beginning%n", file);
+            resetTo(0);
+        }
+        if (start > 0) {  // compact, keeping any partial line
+            System.arraycopy(data, start, data, 0, end - start);
+            end -= start;
+            scanFrom = Math.max(0, scanFrom - start);
+            start = 0;
+        }
+        if (end == data.length) {  // one line bigger than the buffer
+            byte[] bigger = new byte[data.length * 2];
+            System.arraycopy(data, 0, bigger, 0, end);
+            data = bigger;
+        }
+        int n = channel.read(ByteBuffer.wrap(data, end, data.length - end), readOffset);
+        if (n <= 0) {
+            return false;
+        }
+        end += n;
+        readOffset += n;
+        return true;
+    }
+
+    private void awaitChange() throws IOException {
+        maybeCheckpoint(returnedOffset);
+        WatchKey key;
+        try {
+            key = watcher.poll(WATCH_POLL_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+            return;
+        }
+        if (key == null) {
+            return;  // timed out, just try reading again
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && file.getFileName().equals(event.context())) {  // replaced, e.g. log rotation
+                System.out.printf("%s was re-created, reading the new file from the beginning%n", file);
+                channel.close();
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+                resetTo(0);
+            }
+        }
+        key.reset();
+    }
+
+    private void resetTo(long offset) {
+        start = end = scanFrom = 0;
+        consumedOffset = readOffset = returnedOffset = offset;
+    }
+
+    private long loadCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        String text = new String(Files.readAllBytes(checkpointFile), StandardCharsets.US_ASCII).trim();
+        return text.isEmpty() ? 0 : Long.parseLong(text);
+    }
+
+    private void maybeCheckpoint(long offset) throws IOException {
+        if (offset != checkpointedOffset && System.nanoTime() - lastCheckpointNanos >= checkpointIntervalNanos) {
+            writeCheckpoint(offset);
+        }
+    }
+
+    /** Writes to a temp file and renames it, so a crash never leaves a half-written checkpoint. */
+    private void writeCheckpoint(long offset) throws IOException {
+        lastCheckpointNanos = System.nanoTime();
+        if (offset == checkpointedOffset) {
+            return;
+        }
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.write(tmp, Long.toString(offset).getBytes(StandardCharsets.US_ASCII));
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointedOffset = offset;
+    }
+}
@@ -0,0 +1,192 @@
+package com.solace.samples.java.router;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads newline-delimited JSON (one event object per line) from a memory-mapped file, so the
+ * bytes come straight from the OS page cache instead of through stream buffers on the heap.
+ * <p>
+ * The file is cut into chunks of roughly <code>chunkSize</code> bytes, each ending on a line
+ * boundary, and the chunks are parsed by several threads at once. Parser thread <i>t</i> takes
+ * chunks <i>t</i>, <i>t+P</i>, <i>t+2P</i>... and writes their events to its own bounded queue;
+ * {@link #next()} reads the queues round-robin chunk by chunk, so events still come out in file
+ * order. Memory use is bounded by the queue sizes, whatever the file size.
+ */
+public class MappedNdjsonEventSource implements EventSource {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonNode END_OF_CHUNK = new TextNode("<end-of-chunk>");  // compared by identity
+    private static final JsonNode FAILED_CHUNK = new TextNode("<failed-chunk>");
+    private static final int QUEUE_CAPACITY = 4096;
+
+    private final FileChannel channel;
+    private final List<long[]> chunks;  // {start, end} byte offsets
+    private final Parser[] parsers;
+    private int currentChunk = 0;
+
+    /**
+     * @param file          NDJSON file
+     * @param parserThreads number of threads parsing chunks in parallel
+     * @param chunkSize     target chunk size in bytes (each chunk must fit in one 2 GB mapping)
+     */
+    public MappedNdjsonEventSource(Path file, int parserThreads, int chunkSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.chunks = splitIntoChunks(channel, chunkSize);
+        this.parsers = new Parser[Math.max(1, Math.min(parserThreads, chunks.size()))];
+        for (int i = 0; i < parsers.length; i++) {
+            parsers[i] = new Parser(i);
+            parsers[i].thread.start();
+        }
+    }
+
+    @Override
+    public JsonNode next() throws IOException {
+        try {
+            while (currentChunk < chunks.size()) {
+                Parser parser = parsers[currentChunk % parsers.length];
+                JsonNode event = parser.queue.take();
+                if (event == FAILED_CHUNK) {
+                    throw new IOException("Failed to read " + chunkDescription(currentChunk), parser.failure);
+                }
+                if (event != END_OF_CHUNK) {
+                    return event;
+                }
+                currentChunk++;
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading NDJSON input", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Parser parser : parsers) {
+            parser.thread.interrupt();
+        }
+        channel.close();
+    }
+
+    private String chunkDescription(int chunk) {
+        long[] range = chunks.get(chunk);
+        return String.format("chunk %d [%,d..%,d)", chunk, range[0], range[1]);
+    }
+
+    /**
+     * Cuts the file into ranges of about <code>chunkSize</code> bytes, extending each one to just
+     * past the next newline so no line is split between two parsers.
+     */
+    private static List<long[]> splitIntoChunks(FileChannel channel, int chunkSize) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(start + chunkSize, size);
+            while (end < size) {  // find the end of the line we landed in
+                ((Buffer) probe).clear();  // cast keeps Java 8 compatible bytecode
+                int n = channel.read(probe, end);
+                int i = 0;
+                while (i < n && probe.get(i) != '\n') {
+                    i++;
+                }
+                end += i;
+                if (i < n) {
+                    end++;  // include the newline
+                    break;
+                }
+            }
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line starting near offset " + start + " is too long to map");
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private final class Parser implements Runnable {
+        private final int index;
+        private final BlockingQueue<JsonNode> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final Thread thread;
+        private byte[] line = new byte[4096];  // reused; grown for long lines
+        private volatile Throwable failure = null;
+
+        private Parser(int index) {
+            this.index = index;
+            this.thread = new Thread(this, "ndjson-parser-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int chunk = index; chunk < chunks.size(); chunk += parsers.length) {
+                    try {
+                        parseChunk(chunks.get(chunk));
+                    } catch (IOException | RuntimeException e) {
+                        failure = e;
+                        queue.put(FAILED_CHUNK);
+                        return;
+                    }
+                    queue.put(END_OF_CHUNK);
+                }
+            } catch (InterruptedException e) {
+                // closed early
+            }
+        }
+
+        private void parseChunk(long[] range) throws IOException, InterruptedException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+            int lineStart = 0;
+            int limit = buffer.limit();
+            for (int i = 0; i <= limit; i++) {
+                if (i == limit || buffer.get(i) == '\n') {
+                    int end = i;
+                    if (end > lineStart && buffer.get(end - 1) == '\r') {
+                        end--;
+                    }
+                    if (end > lineStart) {
+                        parseLine(buffer, lineStart, end - lineStart, range[0]);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+        }
+
+        private void parseLine(MappedByteBuffer buffer, int offset, int length, long chunkStart)
+                throws InterruptedException {
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            ((Buffer) buffer).position(offset);
+            buffer.get(line, 0, length);
+            try {
+                JsonNode event = MAPPER.readTree(line, 0, length);
+                if (event != null && event.isObject()) {
+                    queue.put(event);
+                }
+            } catch (IOException e) {  // skip the bad line, keep going
+                System.err.printf("Skipping malformed NDJSON line at offset %,d: %s%n",
+                        chunkStart + offset, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.solace.samples.java.router;
+
+import com.solace.messaging.publisher.OutboundMessage;
+import com.solace.messaging.resources.Topic;
+
+/**
+ * The last step of routing an event: hands a built message to a publisher. Lets the router use
+ * Direct and Guaranteed publishers interchangeably.
+ */
+@FunctionalInterface
+public interface MessageSender {
+
+    /**
+     * @param message      the message to send
+     * @param topic        destination
+     * @param sourceRecord the event the message was built from, for correlating acknowledgements
+     */
+    void send(OutboundMessage message, Topic topic, Object sourceRecord);
+}
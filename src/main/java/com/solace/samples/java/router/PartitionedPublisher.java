@@ -0,0 +1,151 @@
+package com.solace.samples.java.router;
+
+import com.solace.samples.java.perf.AllocationMeter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Spreads events over N publishing threads by hashing a key (e.g. <code>customerId</code>
+ * or <code>region</code>). All events with the same key land on the same partition, and each
+ * partition is drained in FIFO order by a single thread, so per-key ordering is preserved while
+ * different keys publish in parallel.
+ * <p>
+ * Each partition gets its own handler from the factory, so handlers may keep thread-confined
+ * state such as an <code>OutboundMessageBuilder</code> or their own publisher. Partition queues
+ * are bounded; {@link #submit} blocks when a partition falls behind, and fails with
+ * {@link IllegalStateException} rather than waiting forever if the partition thread has died.
+ *
+ * @param <E> event type, e.g. a parsed JsonNode or a {@link RawEvent}
+ */
+public class PartitionedPublisher<E> implements AutoCloseable {
+
+    private static final Object POISON = new Object();
+    private static final long OFFER_TIMEOUT_MILLIS = 100;  // how often a blocked submit checks the partition is alive
+
+    private final Function<E, String> keyExtractor;
+    private final List<Partition> partitions = new ArrayList<>();
+
+    /**
+     * @param partitionCount  number of publishing threads
+     * @param queueCapacity   max events queued per partition before {@link #submit} blocks
+     * @param keyExtractor    returns the key of an event (null is treated as empty)
+     * @param handlerFactory  creates the publishing handler for partition <code>i</code>
+     */
+    public PartitionedPublisher(int partitionCount, int queueCapacity, Function<E, String> keyExtractor,
+                                IntFunction<Consumer<E>> handlerFactory) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("Need at least 1 partition: " + partitionCount);
+        }
+        this.keyExtractor = keyExtractor;
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new Partition(i, queueCapacity, handlerFactory.apply(i)));
+        }
+        for (Partition partition : partitions) {
+            partition.thread.start();
+        }
+    }
+
+    /** Hands the event to its partition, blocking if that partition's queue is full. */
+    public void submit(E event) throws InterruptedException {
+        String key = keyExtractor.apply(event);
+        if (key == null) {
+            key = "";
+        }
+        Partition partition = partitions.get((key.hashCode() & Integer.MAX_VALUE) % partitions.size());
+        if (!partition.enqueue(event)) {
+            throw new IllegalStateException("Partition " + partition.index + " thread has stopped");
+        }
+    }
+
+    /** Drains all queued events, then stops the partition threads. */
+    @Override
+    public void close() {
+        try {
+            for (Partition partition : partitions) {
+                partition.enqueue(POISON);  // a dead partition needs no stop signal
+            }
+            for (Partition partition : partitions) {
+                partition.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();  // let the caller see it; queued events may be lost
+        }
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    public long getPublished(int partition) {
+        return partitions.get(partition).published.get();
+    }
+
+    public long getFailed(int partition) {
+        return partitions.get(partition).failed.get();
+    }
+
+    public void printSummary() {
+        for (Partition partition : partitions) {
+            System.out.printf("Partition %d: %,d events published, %,d failed; %s%n",
+                    partition.index, partition.published.get(), partition.failed.get(), partition.allocationReport);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private final class Partition implements Runnable {
+        private final int index;
+        private final BlockingQueue<Object> queue;  // events, then POISON
+        private final Consumer<E> handler;
+        private final Thread thread;
+        private final AtomicLong published = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile String allocationReport = "still running";  // set when the thread ends
+
+        private Partition(int index, int queueCapacity, Consumer<E> handler) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.handler = handler;
+            this.thread = new Thread(this, "router-partition-" + index);
+        }
+
+        /** Waits for queue space while the partition thread is alive; false if it has stopped. */
+        private boolean enqueue(Object item) throws InterruptedException {
+            while (!queue.offer(item, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!thread.isAlive()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            AllocationMeter allocations = new AllocationMeter();  // this partition thread's publishing
+            try {
+                Object event;
+                while ((event = queue.take()) != POISON) {
+                    try {
+                        handler.accept((E) event);
+                        published.incrementAndGet();
+                    } catch (RuntimeException e) {  // threw from publish(), keep the partition alive
+                        System.out.printf("### Partition %d caught while trying to publisher.publish(): %s%n", index, e);
+                        failed.incrementAndGet();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // shutting down
+            }
+            allocationReport = allocations.report(published.get(), "event");
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.solace.samples.java.router;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts published messages and payload bytes per value of each routing field (line of business,
+ * region, event type, ...), as well as in total. Recording is a lookup in a ConcurrentHashMap per
+ * field plus <code>LongAdder</code> increments, so any number of publishing threads can record
+ * without contending on a shared counter.
+ * <p>
+ * A reporter thread can print, at a fixed interval, what changed since the previous report with
+ * per-second rates. Each field keeps at most <code>maxValuesPerField</code> distinct values; the
+ * rest are counted under {@value #OTHER} so a high-cardinality field cannot grow the maps forever.
+ */
+public class PublishStats {
+
+    static final String OTHER = "(other)";
+
+    private final String[] fields;
+    private final int maxValuesPerField;
+    private final List<ConcurrentHashMap<String, Counter>> countersByField = new ArrayList<>();
+    private final Counter total = new Counter();
+    private ScheduledExecutorService reporter;
+    private long lastReportNanos;  // reporter thread only
+
+    public PublishStats(int maxValuesPerField) {
+        this(TopicCache.ROUTING_FIELDS, maxValuesPerField);
+    }
+
+    public PublishStats(String[] fields, int maxValuesPerField) {
+        this.fields = fields.clone();
+        this.maxValuesPerField = maxValuesPerField;
+        for (int i = 0; i < fields.length; i++) {
+            countersByField.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    /** Records one message, reading the field values from the parsed event. */
+    public void record(JsonNode event, long payloadBytes) {
+        for (int i = 0; i < fields.length; i++) {
+            JsonNode value = event.get(fields[i]);
+            counter(i, value == null ? null : value.asText()).add(payloadBytes);
+        }
+        total.add(payloadBytes);
+    }
+
+    /** Records one message whose field values are already extracted, in field order. */
+    public void record(String[] values, long payloadBytes) {
+        for (int i = 0; i < fields.length; i++) {
+            counter(i, values[i]).add(payloadBytes);
+        }
+        total.add(payloadBytes);
+    }
+
+    private Counter counter(int field, String value) {
+        if (value == null) {
+            value = "";
+        }
+        ConcurrentHashMap<String, Counter> counters = countersByField.get(field);
+        Counter counter = counters.get(value);  // plain get first: computeIfAbsent locks the bin on Java 8
+        if (counter == null) {
+            if (counters.size() >= maxValuesPerField) {
+                value = OTHER;
+            }
+            counter = counters.computeIfAbsent(value, v -> new Counter());
+        }
+        return counter;
+    }
+
+    public long getMessages() {
+        return total.messages.sum();
+    }
+
+    public long getBytes() {
+        return total.bytes.sum();
+    }
+
+    /** Message counts per value of one field, sorted by value. */
+    public Map<String, Long> getMessages(String field) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : countersByField.get(indexOf(field)).entrySet()) {
+            result.put(entry.getKey(), entry.getValue().messages.sum());
+        }
+        return result;
+    }
+
+    private int indexOf(String field) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equals(field)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not a statistics field: " + field);
+    }
+
+    /** Starts printing deltas every <code>intervalMs</code> on a daemon thread. */
+    public synchronized void start(long intervalMs) {
+        if (reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "publish-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lastReportNanos = System.nanoTime();
+        reporter.scheduleAtFixedRate(this::printDeltas, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() throws InterruptedException {
+        if (reporter != null) {
+            reporter.shutdown();
+            reporter.awaitTermination(1, TimeUnit.SECONDS);
+            reporter = null;
+        }
+    }
+
+    private void printDeltas() {
+        long now = System.nanoTime();
+        double seconds = (now - lastReportNanos) / 1e9;
+        lastReportNanos = now;
+        StringBuilder sb = new StringBuilder(256);
+        Delta totalDelta = total.delta();
+        sb.append(String.format("### Published %,d msgs (%,.0f msg/s, %,.1f KB/s), %,d total%n",
+                totalDelta.messages, totalDelta.messages / seconds, totalDelta.bytes / seconds / 1024, getMessages()));
+        for (int i = 0; i < fields.length; i++) {
+            sb.append("    ").append(fields[i]).append(':');
+            for (Map.Entry<String, Counter> entry : new TreeMap<>(countersByField.get(i)).entrySet()) {
+                Delta delta = entry.getValue().delta();
+                if (delta.messages > 0) {
+                    sb.append(String.format(" %s=%,.0f/s", entry.getKey(), delta.messages / seconds));
+                }
+            }
+            sb.append(System.lineSeparator());
+        }
+        System.out.print(sb);
+    }
+
+    /** Totals since the start, per field value. */
+    public void printSummary() {
+        System.out.printf("%,d events published, %,d payload bytes%n", getMessages(), getBytes());
+        for (int i = 0; i < fields.length; i++) {
+            System.out.println("By " + fields[i] + ":");
+            for (Map.Entry<String, Counter> entry : new TreeMap<>(countersByField.get(i)).entrySet()) {
+                Counter counter = entry.getValue();
+                System.out.printf("    %-24s %,12d msgs %,16d bytes%n",
+                        entry.getKey(), counter.messages.sum(), counter.bytes.sum());
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static final class Counter {
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private long reportedMessages;  // reporter thread only
+        private long reportedBytes;
+
+        private void add(long payloadBytes) {
+            messages.increment();
+            bytes.add(payloadBytes);
+        }
+
+        private Delta delta() {
+            long m = messages.sum();
+            long b = bytes.sum();
+            Delta delta = new Delta(m - reportedMessages, b - reportedBytes);
+            reportedMessages = m;
+            reportedBytes = b;
+            return delta;
+        }
+    }
+
+    private static final class Delta {
+        private final long messages;
+        private final long bytes;
+
+        private Delta(long messages, long bytes) {
+            this.messages = messages;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.solace.samples.java.router;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An event kept as the exact bytes it had in the input, plus the few fields the router needs to
+ * route it, as extracted by a {@link FieldScanner}. The payload is published as-is.
+ */
+public final class RawEvent {
+
+    private static final int PAYLOAD_PREVIEW_BYTES = 64;  // enough to recognize an event in a log line
+
+    private final byte[] payload;
+    private final String[] fields;
+
+    public RawEvent(byte[] payload, String[] fields) {
+        this.payload = payload;
+        this.fields = fields;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /** Scanned field values, in the order the {@link FieldScanner} was created with. */
+    public String[] getFields() {
+        return fields;
+    }
+
+    public String getField(int index) {
+        return fields[index];
+    }
+
+    /** Scanned fields plus the start of the payload, e.g. for a NACK log line. */
+    @Override
+    public String toString() {
+        int shown = Math.min(payload.length, PAYLOAD_PREVIEW_BYTES);
+        return "RawEvent" + Arrays.toString(fields) + " " + payload.length + " bytes: "
+                + new String(payload, 0, shown, StandardCharsets.UTF_8) + (shown < payload.length ? "..." : "");
+    }
+}
@@ -0,0 +1,256 @@
+package com.solace.samples.java.router;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits an input into the raw bytes of each event without parsing them into a tree. Understands
+ * both input formats the router takes: a document with a top-level <code>actions</code> array,
+ * where each element object is found by brace matching, and NDJSON, one event per line.
+ * <p>
+ * After {@link #next()} returns true, the event is <code>buffer()[offset() .. offset()+length())</code>.
+ * The buffer is reused, so the slice is only valid until the next call.
+ */
+public class RawEventReader implements Closeable {
+
+    private static final String ACTIONS_FIELD = "actions";
+
+    private final InputStream in;
+    private final boolean ndjson;
+    private byte[] buf = new byte[64 * 1024];
+    private int pos = 0;
+    private int limit = 0;
+    private int mark = -1;       // start of the event being scanned, kept across refills
+    private boolean eof = false;
+    private boolean inActions = false;
+    private boolean done = false;
+    private int eventOffset;
+    private int eventLength;
+
+    public RawEventReader(InputStream in, boolean ndjson) {
+        this.in = in;
+        this.ndjson = ndjson;
+    }
+
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int offset() {
+        return eventOffset;
+    }
+
+    public int length() {
+        return eventLength;
+    }
+
+    /** Advances to the next event; false at end of input. */
+    public boolean next() throws IOException {
+        if (done) {
+            return false;
+        }
+        boolean found = ndjson ? nextLine() : nextActionsElement();
+        if (!found) {
+            done = true;
+        }
+        return found;
+    }
+
+    private boolean nextLine() throws IOException {
+        while (true) {
+            mark = pos;
+            int b;
+            while ((b = peek()) >= 0 && b != '\n') {
+                pos++;
+            }
+            if (b < 0 && pos == mark) {
+                return false;
+            }
+            int end = pos;
+            if (b == '\n') {
+                pos++;
+            }
+            if (end > mark && buf[end - 1] == '\r') {
+                end--;
+            }
+            int start = mark;
+            while (start < end && isWhitespace(buf[start])) {
+                start++;
+            }
+            if (start < end) {
+                eventOffset = start;
+                eventLength = end - start;
+                mark = -1;
+                return true;
+            }
+        }
+    }
+
+    private boolean nextActionsElement() throws IOException {
+        if (!inActions && !seekToActions()) {
+            System.err.println("'actions' array not found in payloads.json");
+            return false;
+        }
+        while (true) {
+            skipWhitespace();
+            int b = peek();
+            if (b < 0 || b == ']') {
+                return false;
+            }
+            if (b == ',') {
+                pos++;
+                continue;
+            }
+            mark = pos;
+            skipValue();
+            if (b == '{') {
+                eventOffset = mark;
+                eventLength = pos - mark;
+                mark = -1;
+                return true;
+            }
+            mark = -1;  // not an object, not an event
+        }
+    }
+
+    private boolean seekToActions() throws IOException {
+        skipWhitespace();
+        if (peek() != '{') {
+            return false;
+        }
+        pos++;
+        while (true) {
+            skipWhitespace();
+            int b = peek();
+            if (b == ',') {
+                pos++;
+                continue;
+            }
+            if (b != '"') {
+                return false;  // '}' or malformed
+            }
+            mark = pos;
+            skipString();
+            boolean isActions = pos - mark - 2 == ACTIONS_FIELD.length() && matches(mark + 1, ACTIONS_FIELD);
+            mark = -1;
+            skipWhitespace();
+            if (peek() != ':') {
+                return false;
+            }
+            pos++;
+            skipWhitespace();
+            if (isActions && peek() == '[') {
+                pos++;
+                inActions = true;
+                return true;
+            }
+            skipValue();
+        }
+    }
+
+    private boolean matches(int at, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (buf[at + i] != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Skips one JSON value: object, array, string or scalar. */
+    private void skipValue() throws IOException {
+        int b = peek();
+        if (b == '"') {
+            skipString();
+            return;
+        }
+        if (b == '{' || b == '[') {
+            int depth = 0;
+            while ((b = peek()) >= 0) {
+                if (b == '"') {
+                    skipString();
+                    continue;
+                }
+                pos++;
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if ((b == '}' || b == ']') && --depth == 0) {
+                    return;
+                }
+            }
+            throw new IOException("Unexpected end of input inside an object or array");
+        }
+        while ((b = peek()) >= 0 && b != ',' && b != '}' && b != ']' && !isWhitespace((byte) b)) {
+            pos++;
+        }
+    }
+
+    private void skipString() throws IOException {
+        pos++;  // opening quote
+        int b;
+        while ((b = peek()) >= 0) {
+            pos++;
+            if (b == '\\') {
+                if (peek() < 0) {
+                    break;
+                }
+                pos++;
+            } else if (b == '"') {
+                return;
+            }
+        }
+        throw new IOException("Unexpected end of input inside a string");
+    }
+
+    private void skipWhitespace() throws IOException {
+        int b;
+        while ((b = peek()) >= 0 && isWhitespace((byte) b)) {
+            pos++;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /** Returns the byte at <code>pos</code>, reading more input as needed, or -1 at end of input. */
+    private int peek() throws IOException {
+        if (pos < limit) {
+            return buf[pos] & 0xff;
+        }
+        return fill() ? buf[pos] & 0xff : -1;
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int keep = mark >= 0 ? mark : pos;  // everything before this can be dropped
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, limit - keep);
+            limit -= keep;
+            pos -= keep;
+            if (mark >= 0) {
+                mark -= keep;
+            }
+        }
+        if (limit == buf.length) {  // a single event larger than the buffer
+            byte[] bigger = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, bigger, 0, limit);
+            buf = bigger;
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n <= 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.solace.samples.java.router;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Minimal <code>--name=value</code> / <code>--flag</code> command line parser for the
+ * EventRouter. The known option names are taken from the usage text, one option per line
+ * starting with <code>"  --name"</code>; anything else is rejected so a mistyped option fails
+ * fast instead of silently running with defaults.
+ * A bare <code>--flag</code> counts as present but has no value, so typed getters fall back to
+ * their default for it (e.g. <code>--topic-cache</code> vs <code>--topic-cache=500</code>).
+ */
+public class RouterOptions {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    private RouterOptions() {
+    }
+
+    public static RouterOptions parse(String usage, String... args) {
+        Set<String> known = optionNames(usage);
+        RouterOptions options = new RouterOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg.substring(2) : arg.substring(2, eq);
+            if (!known.contains(name)) {
+                throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+            options.values.put(name, eq < 0 ? null : arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static Set<String> optionNames(String usage) {
+        Set<String> names = new HashSet<>();
+        for (String line : usage.split("\\R")) {
+            if (!line.startsWith("  --")) {
+                continue;
+            }
+            int end = 4;
+            while (end < line.length() && (Character.isLetterOrDigit(line.charAt(end)) || line.charAt(end) == '-')) {
+                end++;
+            }
+            names.add(line.substring(4, end));
+        }
+        return names;
+    }
+
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
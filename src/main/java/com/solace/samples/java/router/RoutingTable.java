@@ -0,0 +1,489 @@
+package com.solace.samples.java.router;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.solace.messaging.resources.Topic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Ordered routing rules, loaded from a JSON file and compiled into a decision trie. A rules file
+ * looks like
+ * <pre>
+ * {"rules": [
+ *   {"name": "test-traffic", "match": {"lineOfBusiness": "test"}, "drop": true},
+ *   {"name": "failures", "match": {"region": ["ae", "eu"], "eventType": "failure"},
+ *    "topics": ["bank/alerts/{region}/{customerId}", "audit/{lineOfBusiness}/failure"]},
+ *   {"name": "default",
+ *    "topics": ["bank/{lineOfBusiness}/{function}/{region}/{operation}/{resourceType}/{eventType}"]}
+ * ]}
+ * </pre>
+ * The first rule whose <code>match</code> accepts the event decides: it publishes a copy to each
+ * of its topic templates (fan-out), or nothing if it drops. Each match entry is one field equal
+ * to a value or to any value of a list; an absent or empty <code>match</code> accepts everything.
+ * Events no rule accepts are dropped and counted as unmatched.
+ * <p>
+ * The trie has one level per field used in any match, with a hash lookup per level, so routing
+ * costs the same however many rules there are. Identical subtrees are shared, which keeps the
+ * trie small for rule sets that only constrain a few fields each.
+ * <p>
+ * Templates with placeholders are looked up in a {@link TopicCache} by the filled-in field
+ * values, so a repeated combination reuses its Topic instead of building a new name per event.
+ * <p>
+ * With {@link #watch(long)} the file is checked for changes and recompiled in the background;
+ * routing switches to the new rules atomically, and a file that fails to compile leaves the
+ * current rules in place. Thread-safe.
+ */
+public final class RoutingTable implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path file;
+    private final TopicCache topicCache;
+    private volatile Compiled current;
+    private FieldScanner scanner;  // set for --raw: values come from its scan results
+    private final ThreadLocal<JsonValues> jsonValues = ThreadLocal.withInitial(JsonValues::new);
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder incomplete = new LongAdder();
+    private ScheduledExecutorService watcher;
+    private FileTime loadedModified;
+
+    private RoutingTable(Path file, TopicCache topicCache) throws IOException {
+        this.file = file;
+        this.topicCache = topicCache;
+        this.loadedModified = Files.getLastModifiedTime(file);
+        this.current = compile(file);
+    }
+
+    /**
+     * @param topicCache where rendered template topics are cached, may be shared with other lookups
+     * @throws IOException              if the file cannot be read or is not JSON
+     * @throws IllegalArgumentException if the rules are not valid
+     */
+    public static RoutingTable load(Path file, TopicCache topicCache) throws IOException {
+        return new RoutingTable(file, topicCache);
+    }
+
+    /** Fields the current rules read, in match fields then template fields order. */
+    public String[] getFields() {
+        return current.fields.clone();
+    }
+
+    /**
+     * Routes from values scanned by <code>scanner</code> from now on, see {@link #route(String[], List)}.
+     * Later reloads must not need fields the scanner does not read.
+     */
+    public synchronized void bind(FieldScanner scanner) {
+        current.bind(scanner);
+        this.scanner = scanner;
+    }
+
+    /**
+     * Adds the topics the event should be published to, in rule order, to <code>topics</code>.
+     *
+     * @return the number of topics added; 0 means drop the event
+     */
+    public int route(JsonNode event, List<Topic> topics) {
+        JsonValues values = jsonValues.get();
+        values.event = event;
+        values.fields = null;
+        try {
+            return route(values, topics);
+        } finally {
+            values.event = null;
+        }
+    }
+
+    /** Like {@link #route(JsonNode, List)}, for values scanned by the scanner given to {@link #bind}. */
+    public int route(String[] scanned, List<Topic> topics) {
+        Compiled compiled = current;
+        return compiled.routeScanned(scanned, topics, this);
+    }
+
+    private int route(JsonValues values, List<Topic> topics) {
+        Compiled compiled = current;
+        values.fields = compiled.fields;
+        return compiled.route(values, topics, this);
+    }
+
+    /** Starts checking the file for changes every <code>intervalMs</code> on a daemon thread. */
+    public synchronized void watch(long intervalMs) {
+        if (watcher != null) {
+            return;
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "routing-table-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::reloadIfModified, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+
+    private synchronized void reloadIfModified() {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.equals(loadedModified)) {
+                return;
+            }
+            loadedModified = modified;
+            Compiled compiled = compile(file);
+            FieldScanner boundScanner = scanner;
+            if (boundScanner != null) {
+                compiled.bind(boundScanner);
+            }
+            current = compiled;
+            System.out.printf("### Routing table reloaded from %s: %d rules%n", file, compiled.rules.length);
+        } catch (IOException | RuntimeException e) {
+            System.out.printf("### Routing table reload failed, keeping the previous rules: %s%n", e.getMessage());
+        }
+    }
+
+    public long getUnmatched() {
+        return unmatched.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public String toString() {
+        Compiled compiled = current;
+        StringBuilder sb = new StringBuilder(String.format("%d rules, %d trie nodes", compiled.rules.length, compiled.nodeCount));
+        for (Rule rule : compiled.rules) {
+            sb.append(String.format("%n    %-20s %,d events", rule.name, rule.hits.sum()));
+        }
+        sb.append(String.format("%n    dropped %,d, unmatched %,d, topics skipped for missing fields %,d",
+                dropped.sum(), unmatched.sum(), incomplete.sum()));
+        return sb.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    static Compiled compile(Path file) throws IOException {
+        JsonNode root = MAPPER.readTree(file.toFile());
+        JsonNode rulesNode = root == null ? null : root.get("rules");
+        if (rulesNode == null || !rulesNode.isArray()) {
+            throw new IllegalArgumentException(file + " has no \"rules\" array");
+        }
+        // collect fields first: match fields become trie levels, template fields are only read
+        Set<String> matchFields = new LinkedHashSet<>();
+        for (JsonNode ruleNode : rulesNode) {
+            JsonNode match = ruleNode.get("match");
+            if (match != null) {
+                match.fieldNames().forEachRemaining(matchFields::add);
+            }
+        }
+        List<String> fields = new ArrayList<>(matchFields);
+        List<Rule> rules = new ArrayList<>();
+        for (JsonNode ruleNode : rulesNode) {
+            rules.add(new Rule(ruleNode, rules.size(), fields, matchFields.size()));
+        }
+        return new Compiled(rules.toArray(new Rule[0]), fields.toArray(new String[0]), matchFields.size());
+    }
+
+    /** An immutable snapshot of the rules and their trie. */
+    static final class Compiled {
+        private final Rule[] rules;
+        private final String[] fields;
+        private final TrieNode root;
+        private final int nodeCount;
+        private int[] scannerIndexes;  // set once by bind(), before publishing to readers
+
+        private Compiled(Rule[] rules, String[] fields, int levels) {
+            this.rules = rules;
+            this.fields = fields;
+            Map<String, TrieNode> shared = new HashMap<>();
+            BitSet all = new BitSet();
+            all.set(0, rules.length);
+            this.root = build(0, levels, all, shared);
+            this.nodeCount = shared.size();
+        }
+
+        private void bind(FieldScanner scanner) {
+            int[] indexes = new int[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                indexes[i] = scanner.indexOf(fields[i]);
+                if (indexes[i] < 0) {
+                    throw new IllegalArgumentException("Routing field '" + fields[i] + "' is not scanned in raw mode");
+                }
+            }
+            this.scannerIndexes = indexes;
+        }
+
+        private TrieNode build(int level, int levels, BitSet candidates, Map<String, TrieNode> shared) {
+            int first = candidates.nextSetBit(0);
+            // done when out of levels, out of rules, or the first remaining rule needs no more checks
+            if (level == levels || first < 0 || !rules[first].constrains(level, levels)) {
+                return shared.computeIfAbsent("leaf:" + first, k -> new TrieNode(first < 0 ? null : rules[first]));
+            }
+            String key = level + ":" + candidates;
+            TrieNode existing = shared.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            BitSet unconstrained = new BitSet();
+            Set<String> values = new LinkedHashSet<>();
+            for (int r = first; r >= 0; r = candidates.nextSetBit(r + 1)) {
+                Set<String> accepted = rules[r].accepted.get(level);
+                if (accepted == null) {
+                    unconstrained.set(r);
+                } else {
+                    values.addAll(accepted);
+                }
+            }
+            TrieNode other = build(level + 1, levels, unconstrained, shared);
+            Map<String, TrieNode> children = new HashMap<>();
+            for (String value : values) {
+                BitSet matching = (BitSet) unconstrained.clone();
+                for (int r = first; r >= 0; r = candidates.nextSetBit(r + 1)) {
+                    Set<String> accepted = rules[r].accepted.get(level);
+                    if (accepted != null && accepted.contains(value)) {
+                        matching.set(r);
+                    }
+                }
+                TrieNode child = build(level + 1, levels, matching, shared);
+                if (child != other) {
+                    children.put(value, child);
+                }
+            }
+            TrieNode node = children.isEmpty() ? other : new TrieNode(level, children, other);
+            shared.put(key, node);
+            return node;
+        }
+
+        private int route(JsonValues values, List<Topic> topics, RoutingTable table) {
+            TrieNode node = root;
+            while (node.rule == null && node.children != null) {
+                TrieNode child = node.children.get(values.get(node.level));
+                node = child != null ? child : node.other;
+            }
+            return emit(node.rule, values, topics, table);
+        }
+
+        private int routeScanned(String[] scanned, List<Topic> topics, RoutingTable table) {
+            if (scannerIndexes == null) {
+                throw new IllegalStateException("Routing table is not bound to a FieldScanner");
+            }
+            ScannedValues values = new ScannedValues(scanned, scannerIndexes);  // scalar-replaced once inlined
+            TrieNode node = root;
+            while (node.rule == null && node.children != null) {
+                TrieNode child = node.children.get(values.get(node.level));
+                node = child != null ? child : node.other;
+            }
+            return emit(node.rule, values, topics, table);
+        }
+
+        private static int emit(Rule rule, FieldValues values, List<Topic> topics, RoutingTable table) {
+            if (rule == null) {
+                table.unmatched.increment();
+                return 0;
+            }
+            rule.hits.increment();
+            if (rule.templates.length == 0) {
+                table.dropped.increment();
+                return 0;
+            }
+            int added = 0;
+            for (Template template : rule.templates) {
+                Topic topic = template.render(values, table.topicCache);
+                if (topic == null) {
+                    table.incomplete.increment();
+                } else {
+                    topics.add(topic);
+                    added++;
+                }
+            }
+            return added;
+        }
+    }
+
+    private static final class TrieNode {
+        private final int level;
+        private final Map<String, TrieNode> children;
+        private final TrieNode other;  // for values no rule at this level names
+        private final Rule rule;       // leaf: the winning rule, or null for no match
+
+        private TrieNode(int level, Map<String, TrieNode> children, TrieNode other) {
+            this.level = level;
+            this.children = children;
+            this.other = other;
+            this.rule = null;
+        }
+
+        private TrieNode(Rule rule) {
+            this.level = -1;
+            this.children = null;
+            this.other = null;
+            this.rule = rule;
+        }
+    }
+
+    private static final class Rule {
+        private final String name;
+        private final List<Set<String>> accepted = new ArrayList<>();  // per match field, null if any value
+        private final Template[] templates;
+        private final LongAdder hits = new LongAdder();
+
+        private Rule(JsonNode node, int index, List<String> fields, int matchFieldCount) {
+            this.name = node.has("name") ? node.get("name").asText() : "rule-" + (index + 1);
+            JsonNode match = node.get("match");
+            for (String field : fields.subList(0, matchFieldCount)) {
+                JsonNode condition = match == null ? null : match.get(field);
+                if (condition == null) {
+                    accepted.add(null);
+                } else if (condition.isArray()) {
+                    Set<String> values = new LinkedHashSet<>();
+                    condition.forEach(value -> values.add(value.asText()));
+                    accepted.add(values);
+                } else {
+                    accepted.add(new LinkedHashSet<>(Arrays.asList(condition.asText())));
+                }
+            }
+            boolean drop = node.path("drop").asBoolean(false);
+            JsonNode topicsNode = node.get("topics");
+            if (drop == (topicsNode != null && topicsNode.size() > 0)) {
+                throw new IllegalArgumentException("Rule '" + name + "' needs either \"topics\" or \"drop\": true");
+            }
+            List<Template> templateList = new ArrayList<>();
+            if (topicsNode != null) {
+                for (JsonNode topic : topicsNode) {
+                    templateList.add(new Template(topic.asText(), fields));
+                }
+            }
+            this.templates = templateList.toArray(new Template[0]);
+        }
+
+        /** Whether this rule checks any field at trie level <code>level</code> or deeper. */
+        private boolean constrains(int level, int levels) {
+            for (int i = level; i < levels; i++) {
+                if (accepted.get(i) != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** A topic with <code>{field}</code> placeholders, e.g. <code>bank/alerts/{region}</code>. */
+    private static final class Template {
+        private final String text;
+        private final String[] literals;  // literals[i] comes before fieldIndexes[i]; one extra at the end
+        private final int[] fieldIndexes;
+        private final Topic constant;     // when there are no placeholders
+        private final ThreadLocal<String[]> probeValues;
+        private final Function<String[], String> topicName = this::topicName;
+
+        /** Adds placeholder fields not yet in <code>fields</code> to it. */
+        private Template(String text, List<String> fields) {
+            List<String> literalList = new ArrayList<>();
+            List<Integer> indexList = new ArrayList<>();
+            int p = 0;
+            int open;
+            while ((open = text.indexOf('{', p)) >= 0) {
+                int close = text.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed '{' in topic template: " + text);
+                }
+                literalList.add(text.substring(p, open));
+                String field = text.substring(open + 1, close);
+                int index = fields.indexOf(field);
+                if (index < 0) {
+                    fields.add(field);
+                    index = fields.size() - 1;
+                }
+                indexList.add(index);
+                p = close + 1;
+            }
+            literalList.add(text.substring(p));
+            this.text = text;
+            this.literals = literalList.toArray(new String[0]);
+            this.fieldIndexes = new int[indexList.size()];
+            for (int i = 0; i < fieldIndexes.length; i++) {
+                fieldIndexes[i] = indexList.get(i);
+            }
+            this.constant = fieldIndexes.length == 0 ? Topic.of(text) : null;
+            int placeholders = fieldIndexes.length;
+            this.probeValues = ThreadLocal.withInitial(() -> new String[placeholders]);
+        }
+
+        /** @return the topic, or null when a placeholder field is missing */
+        private Topic render(FieldValues values, TopicCache topicCache) {
+            if (constant != null) {
+                return constant;
+            }
+            String[] filled = probeValues.get();
+            for (int i = 0; i < fieldIndexes.length; i++) {
+                String value = values.get(fieldIndexes[i]);
+                if (value == null || value.isEmpty()) {
+                    return null;
+                }
+                filled[i] = value;
+            }
+            return topicCache.get(text, filled, topicName);  // keyed by template text, so reloads keep hits
+        }
+
+        private String topicName(String[] filled) {
+            StringBuilder sb = new StringBuilder(64);
+            for (int i = 0; i < fieldIndexes.length; i++) {
+                sb.append(literals[i]).append(filled[i]);
+            }
+            return sb.append(literals[fieldIndexes.length]).toString();
+        }
+    }
+
+    private interface FieldValues {
+        String get(int field);
+    }
+
+    private static final class JsonValues implements FieldValues {
+        private JsonNode event;
+        private String[] fields;
+
+        @Override
+        public String get(int field) {
+            JsonNode node = event.get(fields[field]);
+            return node == null ? null : node.asText();
+        }
+    }
+
+    private static final class ScannedValues implements FieldValues {
+        private final String[] scanned;
+        private final int[] indexes;
+
+        private ScannedValues(String[] scanned, int[] indexes) {
+            this.scanned = scanned;
+            this.indexes = indexes;
+        }
+
+        @Override
+        public String get(int field) {
+            return scanned[indexes[field]];
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.solace.samples.java.router;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Walks the <code>actions</code> array of a payloads document with Jackson's streaming
+ * {@link JsonParser}, materializing only one element at a time. Memory use is bounded by the
+ * size of the largest single event rather than the size of the file, and the first event is
+ * available as soon as its closing brace has been read.
+ */
+public class StreamingJsonEventSource implements EventSource {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String ACTIONS_FIELD = "actions";
+
+    private final JsonParser parser;
+    private boolean inActions = false;
+    private boolean done = false;
+
+    public StreamingJsonEventSource(InputStream inputStream) throws IOException {
+        this.parser = MAPPER.getFactory().createParser(inputStream);
+    }
+
+    @Override
+    public JsonNode next() throws IOException {
+        if (done) {
+            return null;
+        }
+        if (!inActions && !seekToActions()) {
+            System.err.println("'actions' array not found in payloads.json");
+            done = true;
+            return null;
+        }
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            if (token == JsonToken.END_ARRAY) {  // end of 'actions', ignore whatever follows
+                break;
+            }
+            if (token == JsonToken.START_OBJECT) {
+                return MAPPER.readTree(parser);  // reads just this element
+            }
+            parser.skipChildren();  // scalars or nested arrays are not events
+        }
+        done = true;
+        return null;
+    }
+
+    /**
+     * Moves the parser to just inside the top-level <code>actions</code> array, skipping any
+     * other top-level fields without building them.
+     */
+    private boolean seekToActions() throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (ACTIONS_FIELD.equals(fieldName) && value == JsonToken.START_ARRAY) {
+                inActions = true;
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();  // also closes the underlying stream
+    }
+}
@@ -0,0 +1,337 @@
+package com.solace.samples.java.router;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes an endless stream of realistic events from a few example events used as templates. Each
+ * call to {@link #next(Random)} copies a random template and overwrites selected fields with values
+ * drawn from per-field distributions. Nothing is generated ahead of time.
+ * <p>
+ * Distributions come from a JSON config of the form
+ * <pre>
+ * {"fields": {
+ *   "customerId": {"distribution": "zipf", "count": 100000, "exponent": 1.1, "prefix": "CUST", "start": 1000},
+ *   "region":     {"distribution": "uniform", "values": ["ae", "eu", "us", "in"]},
+ *   "eventType":  {"distribution": "weighted", "values": {"success": 95, "failure": 5}},
+ *   "amount":     {"distribution": "range", "min": 10, "max": 5000},
+ *   "loanId":     {"distribution": "sequence", "prefix": "LOAN"},
+ *   "timestamp":  {"distribution": "now"}
+ * }}
+ * </pre>
+ * Zipf ranks start at <code>start</code> (rank 1 is the most frequent) and are appended to the
+ * prefix. Without a config, customerId is Zipf over 10,000 customers and timestamp is the current
+ * time.
+ * <p>
+ * Routing fields that the config does not name keep the values of the template they were copied
+ * from, so every event carries a routing tuple (line of business, region, event type and so on)
+ * that a real event had. Adding <code>"routing": "independent"</code> next to <code>"fields"</code>
+ * instead draws each of those routing fields uniformly and independently over the values the
+ * templates use, which spreads load over more topics but also makes combinations that never occur
+ * together, such as a loan event type under the cards line of business.
+ * <p>
+ * Thread-safe as long as each thread passes its own <code>Random</code>, e.g.
+ * <code>ThreadLocalRandom.current()</code>.
+ */
+public final class SyntheticEventGenerator {
+
+    private final List<ObjectNode> templates = new ArrayList<>();
+    private final Map<String, FieldGenerator> fields = new LinkedHashMap<>();
+    private final boolean independentRouting;
+
+    /**
+     * @param templates example events, which must be JSON objects
+     * @param config    field distributions as described above, or null for the defaults
+     * @throws IllegalArgumentException on an unknown distribution or routing mode, or a missing parameter
+     */
+    public SyntheticEventGenerator(List<JsonNode> templates, JsonNode config) {
+        for (JsonNode template : templates) {
+            if (template instanceof ObjectNode) {
+                this.templates.add((ObjectNode) template);
+            }
+        }
+        if (this.templates.isEmpty()) {
+            throw new IllegalArgumentException("No JSON object events to use as templates");
+        }
+        String routing = config == null ? "template" : config.path("routing").asText("template");
+        if (!routing.equals("template") && !routing.equals("independent")) {
+            throw new IllegalArgumentException("Unknown routing mode '" + routing + "', expected template or independent");
+        }
+        this.independentRouting = routing.equals("independent");
+        JsonNode fieldsNode = config == null ? null : config.get("fields");
+        if (fieldsNode == null) {
+            fields.put("customerId", new Zipf(10_000, 1.0, "CUST", 1000));
+            fields.put("timestamp", new Now());
+        } else {
+            Iterator<Map.Entry<String, JsonNode>> it = fieldsNode.fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> entry = it.next();
+                fields.put(entry.getKey(), create(entry.getKey(), entry.getValue()));
+            }
+        }
+        if (independentRouting) {
+            addIndependentRouting();
+        }
+    }
+
+    /** A uniform distribution over the template values of each routing field the config leaves out. */
+    private void addIndependentRouting() {
+        for (String field : TopicCache.ROUTING_FIELDS) {
+            if (fields.containsKey(field)) {
+                continue;
+            }
+            Set<String> seen = new LinkedHashSet<>();
+            for (ObjectNode template : templates) {
+                JsonNode value = template.get(field);
+                if (value != null && value.isTextual()) {
+                    seen.add(value.asText());
+                }
+            }
+            if (seen.size() > 1) {
+                fields.put(field, new Uniform(new ArrayList<>(seen)));
+            }
+        }
+    }
+
+    /** A fresh event: a copy of a random template with the configured fields regenerated. */
+    public ObjectNode next(Random random) {
+        ObjectNode event = templates.get(random.nextInt(templates.size())).deepCopy();
+        for (Map.Entry<String, FieldGenerator> entry : fields.entrySet()) {
+            Object value = entry.getValue().next(random);
+            if (value instanceof Long) {
+                event.put(entry.getKey(), (Long) value);
+            } else {
+                event.put(entry.getKey(), (String) value);
+            }
+        }
+        return event;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(templates.size() + " templates, "
+                + (independentRouting ? "independent" : "template") + " routing, varying");
+        for (Map.Entry<String, FieldGenerator> entry : fields.entrySet()) {
+            sb.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static FieldGenerator create(String field, JsonNode spec) {
+        String distribution = spec.path("distribution").asText("");
+        switch (distribution) {
+            case "zipf":
+                return new Zipf(required(field, spec, "count").asInt(), spec.path("exponent").asDouble(1.0),
+                        spec.path("prefix").asText(""), spec.path("start").asLong(1));
+            case "uniform": {
+                List<String> values = new ArrayList<>();
+                required(field, spec, "values").forEach(value -> values.add(value.asText()));
+                return new Uniform(values);
+            }
+            case "weighted": {
+                Map<String, Double> weights = new LinkedHashMap<>();
+                required(field, spec, "values").fields()
+                        .forEachRemaining(entry -> weights.put(entry.getKey(), entry.getValue().asDouble()));
+                return new Weighted(weights);
+            }
+            case "range":
+                return new Range(required(field, spec, "min").asLong(), required(field, spec, "max").asLong());
+            case "sequence":
+                return new Sequence(spec.path("prefix").asText(""), spec.path("start").asLong(1));
+            case "now":
+                return new Now();
+            default:
+                throw new IllegalArgumentException("Field '" + field + "': unknown distribution '" + distribution
+                        + "', expected zipf, uniform, weighted, range, sequence or now");
+        }
+    }
+
+    private static JsonNode required(String field, JsonNode spec, String name) {
+        JsonNode value = spec.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Field '" + field + "': missing \"" + name + "\"");
+        }
+        return value;
+    }
+
+    /** Produces a String or a Long for one field. */
+    private interface FieldGenerator {
+        Object next(Random random);
+    }
+
+    private static final class Uniform implements FieldGenerator {
+        private final String[] values;
+
+        private Uniform(List<String> values) {
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("Uniform distribution needs at least one value");
+            }
+            this.values = values.toArray(new String[0]);
+        }
+
+        @Override
+        public Object next(Random random) {
+            return values[random.nextInt(values.length)];
+        }
+
+        @Override
+        public String toString() {
+            return "uniform" + Arrays.toString(values);
+        }
+    }
+
+    /** Picks values by cumulative weight with a binary search. */
+    private static class Weighted implements FieldGenerator {
+        private final String[] values;
+        private final double[] cumulative;
+
+        private Weighted(Map<String, Double> weights) {
+            this(weights.keySet().toArray(new String[0]), toCumulative(weights.values()));
+        }
+
+        Weighted(String[] values, double[] cumulative) {
+            if (values.length == 0 || cumulative[cumulative.length - 1] <= 0) {
+                throw new IllegalArgumentException("Weighted distribution needs a positive total weight");
+            }
+            this.values = values;
+            this.cumulative = cumulative;
+        }
+
+        private static double[] toCumulative(Iterable<Double> weights) {
+            List<Double> list = new ArrayList<>();
+            weights.forEach(list::add);
+            double[] cumulative = new double[list.size()];
+            double sum = 0;
+            for (int i = 0; i < cumulative.length; i++) {
+                sum += list.get(i);
+                cumulative[i] = sum;
+            }
+            return cumulative;
+        }
+
+        int sampleIndex(Random random) {
+            double u = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, u);
+            index = index >= 0 ? index + 1 : -index - 1;  // first bucket whose upper bound exceeds u
+            return Math.min(index, cumulative.length - 1);
+        }
+
+        @Override
+        public Object next(Random random) {
+            return values[sampleIndex(random)];
+        }
+
+        @Override
+        public String toString() {
+            return "weighted" + Arrays.toString(values);
+        }
+    }
+
+    /** Zipf over <code>count</code> ranks: P(rank k) is proportional to 1 / k^exponent. */
+    private static final class Zipf extends Weighted {
+        private final String prefix;
+        private final long start;
+        private final int count;
+        private final double exponent;
+
+        private Zipf(int count, double exponent, String prefix, long start) {
+            super(new String[count], zipfCumulative(count, exponent));
+            this.prefix = prefix;
+            this.start = start;
+            this.count = count;
+            this.exponent = exponent;
+        }
+
+        private static double[] zipfCumulative(int count, double exponent) {
+            if (count < 1) {
+                throw new IllegalArgumentException("Zipf distribution needs count >= 1: " + count);
+            }
+            double[] cumulative = new double[count];
+            double sum = 0;
+            for (int k = 1; k <= count; k++) {
+                sum += 1 / Math.pow(k, exponent);
+                cumulative[k - 1] = sum;
+            }
+            return cumulative;
+        }
+
+        @Override
+        public Object next(Random random) {
+            return prefix + (start + sampleIndex(random));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("zipf(%,d, s=%s, %s%d..)", count, exponent, prefix, start);
+        }
+    }
+
+    private static final class Range implements FieldGenerator {
+        private final long min;
+        private final long max;
+
+        private Range(long min, long max) {
+            if (max < min) {
+                throw new IllegalArgumentException("Range max < min: " + max + " < " + min);
+            }
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public Object next(Random random) {
+            return min + (long) (random.nextDouble() * (max - min + 1));
+        }
+
+        @Override
+        public String toString() {
+            return "range[" + min + ".." + max + "]";
+        }
+    }
+
+    private static final class Sequence implements FieldGenerator {
+        private final String prefix;
+        private final AtomicLong next;
+
+        private Sequence(String prefix, long start) {
+            this.prefix = prefix;
+            this.next = new AtomicLong(start);
+        }
+
+        @Override
+        public Object next(Random random) {
+            return prefix + next.getAndIncrement();
+        }
+
+        @Override
+        public String toString() {
+            return "sequence(" + prefix + next.get() + "..)";
+        }
+    }
+
+    private static final class Now implements FieldGenerator {
+        @Override
+        public Object next(Random random) {
+            return Instant.now().toString();
+        }
+
+        @Override
+        public String toString() {
+            return "now";
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.solace.samples.java.router;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.solace.messaging.resources.Topic;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Maps the six routing fields of an event straight to a ready-built {@link Topic}, so the hot path
+ * does not format a topic string or create a Topic object per message.
+ * <p>
+ * Lookups use a reusable per-thread probe key, so a hit allocates nothing. The cache is bounded:
+ * once <code>maxEntries</code> distinct combinations are cached, further new combinations are
+ * built on every call but not stored (counted as misses), which keeps memory fixed without
+ * evicting the hot entries. Safe for use from multiple publishing threads.
+ * <p>
+ * Other topic layouts, such as the templates of a {@link RoutingTable}, share the cache through
+ * {@link #get(String, String[], Function)}: entries are keyed by the layout text plus the values
+ * filled into it.
+ */
+public class TopicCache {
+
+    public static final String TOPIC_ROOT = "bank";
+    public static final String[] ROUTING_FIELDS =
+            {"lineOfBusiness", "function", "region", "operation", "resourceType", "eventType"};
+    /** The fixed layout, written as the equivalent routing table template. */
+    private static final String ROUTING_LAYOUT = TOPIC_ROOT + "/{" + String.join("}/{", ROUTING_FIELDS) + "}";
+    private static final Function<String[], String> ROUTING_NAMES = TopicCache::topicName;
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<Key, Topic> topics;
+    private final ThreadLocal<Key> probes = ThreadLocal.withInitial(() -> new Key(ROUTING_FIELDS.length));
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TopicCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.topics = new ConcurrentHashMap<>(Math.min(maxEntries, 4096));
+    }
+
+    /** Looks up the topic for an event, reading its six routing fields. */
+    public Topic get(JsonNode event) {
+        Key probe = probes.get();
+        probe.reset(ROUTING_LAYOUT, ROUTING_FIELDS.length);
+        for (int i = 0; i < ROUTING_FIELDS.length; i++) {
+            probe.levels[i] = event.get(ROUTING_FIELDS[i]).asText();
+        }
+        return lookup(probe, ROUTING_NAMES);
+    }
+
+    /** Looks up the topic for already extracted routing values, in {@link #ROUTING_FIELDS} order. */
+    public Topic get(String[] routingValues) {
+        Key probe = probes.get();
+        probe.reset(ROUTING_LAYOUT, ROUTING_FIELDS.length);
+        System.arraycopy(routingValues, 0, probe.levels, 0, ROUTING_FIELDS.length);
+        return lookup(probe, ROUTING_NAMES);
+    }
+
+    /**
+     * Looks up the topic for <code>values</code> filled into <code>layout</code>, e.g. a topic
+     * template. <code>topicName</code> builds the name from the values on a miss.
+     */
+    public Topic get(String layout, String[] values, Function<String[], String> topicName) {
+        Key probe = probes.get();
+        probe.reset(layout, values.length);
+        System.arraycopy(values, 0, probe.levels, 0, values.length);
+        return lookup(probe, topicName);
+    }
+
+    private Topic lookup(Key probe, Function<String[], String> topicName) {
+        probe.rehash();
+        Topic topic = topics.get(probe);
+        if (topic != null) {
+            hits.increment();
+            return topic;
+        }
+        misses.increment();
+        Key key = probe.copy();  // never store the mutable probe
+        topic = Topic.of(topicName.apply(key.levels));
+        if (topics.size() < maxEntries) {
+            Topic existing = topics.putIfAbsent(key, topic);
+            if (existing != null) {
+                topic = existing;
+            }
+        }
+        return topic;
+    }
+
+    /** Same topic layout as EventRouter.buildTopicName(), without String.format. */
+    static String topicName(String[] levels) {
+        StringBuilder sb = new StringBuilder(64).append(TOPIC_ROOT);
+        for (String level : levels) {
+            sb.append('/').append(level);
+        }
+        return sb.toString();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return topics.size();
+    }
+
+    @Override
+    public String toString() {
+        long h = getHits();
+        long m = getMisses();
+        return String.format("%,d entries (max %,d), %,d hits, %,d misses, %.2f%% hit ratio",
+                size(), maxEntries, h, m, h + m == 0 ? 0 : 100.0 * h / (h + m));
+    }
+
+    /**
+     * Layout plus level values. Mutable only while used as a per-thread probe, whose array may be
+     * longer than <code>length</code>; stored keys are exact copies.
+     */
+    private static final class Key {
+        private String layout;
+        private String[] levels;
+        private int length;
+        private int hash;
+
+        private Key(int capacity) {
+            this.levels = new String[capacity];
+        }
+
+        private void reset(String layout, int length) {
+            if (levels.length < length) {
+                levels = new String[length];
+            }
+            this.layout = layout;
+            this.length = length;
+        }
+
+        private void rehash() {
+            int h = layout.hashCode();
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + levels[i].hashCode();
+            }
+            hash = h;
+        }
+
+        private Key copy() {
+            Key key = new Key(length);
+            System.arraycopy(levels, 0, key.levels, 0, length);
+            key.layout = layout;
+            key.length = length;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (hash != other.hash || length != other.length || !layout.equals(other.layout)) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (!levels[i].equals(other.levels[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
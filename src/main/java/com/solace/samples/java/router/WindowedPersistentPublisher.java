@@ -0,0 +1,132 @@
+package com.solace.samples.java.router;
+
+import com.solace.messaging.PubSubPlusClientException;
+import com.solace.messaging.publisher.OutboundMessage;
+import com.solace.messaging.publisher.PersistentMessagePublisher;
+import com.solace.messaging.publisher.PersistentMessagePublisher.PublishReceipt;
+import com.solace.messaging.resources.Topic;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pipelined Guaranteed publishing: keeps up to <code>windowSize</code> messages in flight and
+ * learns about each one asynchronously through a publish receipt, rather than waiting for every
+ * message with <code>publishAwaitAcknowledgement</code>. When the window is full,
+ * {@link #send} blocks until the broker acknowledges an earlier message.
+ * <p>
+ * The source record passed to {@link #send} travels with the message as its user context, so
+ * every ACK or NACK can be traced back to the event it came from.
+ */
+public class WindowedPersistentPublisher implements MessageSender {
+
+    private final PersistentMessagePublisher publisher;
+    private final int windowSize;
+    private final Semaphore window;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder nacked = new LongAdder();
+    private final LongAdder ackLatencyTotalNanos = new LongAdder();
+    private final LongAccumulator ackLatencyMaxNanos = new LongAccumulator(Math::max, 0);
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param publisher  a started publisher; its receipt listener is replaced by this class
+     * @param windowSize max number of unacknowledged messages
+     */
+    public WindowedPersistentPublisher(PersistentMessagePublisher publisher, int windowSize) {
+        this.publisher = publisher;
+        this.windowSize = windowSize;
+        this.window = new Semaphore(windowSize);
+        publisher.setMessagePublishReceiptListener(this::onPublishReceipt);
+    }
+
+    @Override
+    public void send(OutboundMessage message, Topic topic, Object sourceRecord) {
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for publish window", e);
+        }
+        try {
+            publisher.publish(message, topic, new InFlight(sourceRecord, System.nanoTime()));
+            sent.increment();
+        } catch (RuntimeException e) {
+            window.release();  // never made it out, so no receipt will come
+            throw e;
+        }
+    }
+
+    private void onPublishReceipt(PublishReceipt publishReceipt) {
+        InFlight inFlight = (InFlight) publishReceipt.getUserContext();
+        long latency = System.nanoTime() - inFlight.publishNanos;
+        ackLatencyTotalNanos.add(latency);
+        ackLatencyMaxNanos.accumulate(latency);
+        final PubSubPlusClientException e = publishReceipt.getException();
+        if (e == null) {  // ACK, broker has it now
+            acked.increment();
+        } else {  // NACK, e.g. spool over quota, ACL violation
+            nacked.increment();
+            System.out.printf("### NACK for %s - %s%n", inFlight.sourceRecord, e);
+        }
+        window.release();
+    }
+
+    /**
+     * Waits until every message sent so far has been ACKed or NACKed.
+     *
+     * @return true if the window drained within the timeout
+     */
+    public boolean awaitReceipts(long timeoutMs) throws InterruptedException {
+        if (!window.tryAcquire(windowSize, timeoutMs, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        window.release(windowSize);
+        return true;
+    }
+
+    /** Drains outstanding receipts, then terminates the underlying publisher. */
+    public void terminate(long timeoutMs) throws InterruptedException {
+        if (!awaitReceipts(timeoutMs)) {
+            System.out.printf("### %d message(s) still unacknowledged at shutdown%n", getInFlight());
+        }
+        publisher.terminate(timeoutMs);
+    }
+
+    public int getInFlight() {
+        return windowSize - window.availablePermits();
+    }
+
+    public long getAcked() {
+        return acked.sum();
+    }
+
+    public long getNacked() {
+        return nacked.sum();
+    }
+
+    @Override
+    public String toString() {
+        long receipts = acked.sum() + nacked.sum();
+        double elapsedSec = (System.nanoTime() - startNanos) / 1e9;
+        return String.format("%,d sent, %,d acked, %,d nacked, %,.0f acks/s, ack latency avg %,.1f us / max %,.1f us (window %d)",
+                sent.sum(), acked.sum(), nacked.sum(), elapsedSec > 0 ? receipts / elapsedSec : 0,
+                receipts == 0 ? 0 : ackLatencyTotalNanos.sum() / 1e3 / receipts, ackLatencyMaxNanos.get() / 1e3,
+                windowSize);
+    }
+
+    /** User context carried with each message until its receipt arrives. */
+    private static final class InFlight {
+        private final Object sourceRecord;
+        private final long publishNanos;
+
+        private InFlight(Object sourceRecord, long publishNanos) {
+            this.sourceRecord = sourceRecord;
+            this.publishNanos = publishNanos;
+        }
+    }
+}